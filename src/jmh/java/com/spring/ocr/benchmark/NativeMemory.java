@@ -0,0 +1,64 @@
+package com.spring.ocr.benchmark;
+
+import com.spring.ocr.util.MatScope;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.function.Supplier;
+
+/**
+ * Native memory of the Mats tracked by {@link MatScope}, reported next to the heap numbers of the gc profiler.
+ * {@code nativeAllocated} is the rate of tracked native allocation in bytes,
+ * divide it by the throughput for bytes per operation like {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class NativeMemory {
+
+    public long nativeAllocated;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        nativeAllocated = 0;
+    }
+
+    /**
+     * Run one operation in its own scope, everything it tracked is released afterwards
+     * @param blackhole
+     * @param operation
+     */
+    public void run(Blackhole blackhole, Supplier<Object> operation) {
+        long before = MatScope.liveBytes();
+        try (MatScope scope = MatScope.open()) {
+            blackhole.consume(operation.get());
+            nativeAllocated += MatScope.liveBytes() - before;
+        }
+    }
+
+    /**
+     * Tracked native bytes that were still live at the end of an iteration, anything but 0 is a leak
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+
+        public long nativeRetained;
+
+        private long liveAtStart;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            liveAtStart = MatScope.liveBytes();
+        }
+
+        @TearDown(Level.Iteration)
+        public void end() {
+            nativeRetained = MatScope.liveBytes() - liveAtStart;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.spring.ocr.benchmark;
+
+import com.spring.ocr.metrics.OcrMetrics;
+import com.spring.ocr.preprocess.PreprocessPipeline;
+import com.spring.ocr.preprocess.PreprocessProfiles;
+import com.spring.ocr.service.ImageProcessService;
+import com.spring.ocr.service.impl.ImageProcessServiceImpl;
+import com.spring.ocr.util.MatScope;
+import com.spring.ocr.util.OpencvUtil;
+import com.spring.ocr.validator.ImageLimits;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nu.pattern.OpenCV;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.support.ResourcePropertySource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the OpenCV operations of the OCR pipeline over synthetic pages.
+ * The noise filters work in place, so they run on a fresh copy of the input; subtract {@link #copy} to get their own cost.
+ * The preprocessing benchmarks run every configured profile, from a decoded page and from the encoded upload.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OpencvUtilBenchmark {
+
+    @Param({"640x480", "1920x1080", "4000x3000"})
+    String resolution;
+
+    Mat color;
+    Mat gray;
+    Mat binary;
+    Mat skewed;
+    byte[] png;
+    ByteBuffer pngBuffer;
+
+    @Setup(Level.Trial)
+    public void loadCorpus() {
+        OpenCV.loadShared();
+        color = SyntheticCorpus.page(resolution, 42);
+        gray = new Mat();
+        Imgproc.cvtColor(color, gray, Imgproc.COLOR_BGR2GRAY);
+        binary = new Mat();
+        Imgproc.threshold(gray, binary, 0, 255, Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);
+        skewed = new Mat();
+        Imgproc.warpAffine(gray, skewed, Imgproc.getRotationMatrix2D(new Point(gray.cols() / 2.0, gray.rows() / 2.0), 3, 1),
+                gray.size(), Imgproc.INTER_LINEAR, Core.BORDER_REPLICATE);
+        png = SyntheticCorpus.encode(color, ".png");
+        pngBuffer = ByteBuffer.allocateDirect(png.length).put(png).flip();
+    }
+
+    @TearDown(Level.Trial)
+    public void releaseCorpus() {
+        color.release();
+        gray.release();
+        binary.release();
+        skewed.release();
+    }
+
+    @Benchmark
+    public void copy(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> copyOf(binary));
+    }
+
+    @Benchmark
+    public void gray(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.gray(color));
+    }
+
+    @Benchmark
+    public void gaussianBlur(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.gaussianBlur(gray));
+    }
+
+    @Benchmark
+    public void binary(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.binary(gray));
+    }
+
+    @Benchmark
+    public void navieRemoveNoise(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.navieRemoveNoise(copyOf(binary), 1));
+    }
+
+    @Benchmark
+    public void contoursRemoveNoise(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.contoursRemoveNoise(copyOf(binary), 1));
+    }
+
+    @Benchmark
+    public void byteArrayToMat(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.byteArrayToMat(png));
+    }
+
+    @Benchmark
+    public void byteBufferToMat(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.byteBufferToMat(pngBuffer));
+    }
+
+    @Benchmark
+    public void matToBufImg(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.matToBufImg(gray, ".png"));
+    }
+
+    @Benchmark
+    public void textHeight(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.textHeight(gray, 4_000_000L));
+    }
+
+    @Benchmark
+    public void imageQuality(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.imageQuality(gray, 250_000L));
+    }
+
+    @Benchmark
+    public void deskew(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.deskew(skewed, 250_000L, 0.3));
+    }
+
+    @Benchmark
+    public void houghLinesP(NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> OpencvUtil.houghLinesP(copyOf(skewed), copyOf(skewed)));
+    }
+
+    @Benchmark
+    public void preprocess(Profiles profiles, NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> profiles.imageProcessService.preprocessImage(color, profiles.pipeline));
+    }
+
+    @Benchmark
+    public void decodeAndPreprocess(Profiles profiles, NativeMemory memory, NativeMemory.Retained retained, Blackhole blackhole) {
+        memory.run(blackhole, () -> profiles.imageProcessService.preprocessImage(pngBuffer, profiles.pipeline));
+    }
+
+    private static Mat copyOf(Mat mat) {
+        return MatScope.track(mat.clone());
+    }
+
+    /**
+     * The preprocessing profiles as configured in application.properties, applied the way requests apply them
+     */
+    @State(Scope.Benchmark)
+    public static class Profiles {
+
+        @Param({"fast", "default", "noisy-scan", "auto"})
+        String profile;
+
+        PreprocessProfiles preprocessProfiles;
+        PreprocessPipeline pipeline;
+        ImageProcessService imageProcessService;
+
+        @Setup(Level.Trial)
+        public void compile() throws IOException {
+            OpenCV.loadShared();
+            StandardEnvironment environment = new StandardEnvironment();
+            environment.getPropertySources().addLast(new ResourcePropertySource("classpath:application.properties"));
+            preprocessProfiles = new PreprocessProfiles(environment, new OcrMetrics(new SimpleMeterRegistry(), environment));
+            pipeline = preprocessProfiles.get(profile);
+            imageProcessService = new ImageProcessServiceImpl(new ImageLimits(environment), environment);
+        }
+
+        @TearDown(Level.Trial)
+        public void release() {
+            preprocessProfiles.releaseKernels();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.spring.ocr.benchmark;
+
+import com.spring.ocr.SpringBootOcrApplication;
+import com.spring.ocr.bootstrap.OpenCvInitializerComponent;
+import com.spring.ocr.engine.TesseractEnginePool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from a cold JVM to a ready application: the context is started and the preloaded tesseract engines are created.
+ * Every fork measures a single start, so classes, native libraries and traineddata are loaded from scratch.
+ * Pass {@code -jvmArgsAppend -XX:SharedArchiveFile=...} to measure with an AppCDS archive.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({"default", "fast-startup"})
+    String profile;
+
+    ConfigurableApplicationContext context;
+
+    @Benchmark
+    public ConfigurableApplicationContext start() throws InterruptedException {
+        OpenCvInitializerComponent.loadAsync();
+        context = SpringApplication.run(SpringBootOcrApplication.class,
+                "--spring.profiles.active=" + profile, "--server.port=0", "--ocr.reactive.port=0");
+        TesseractEnginePool pool = context.getBean(TesseractEnginePool.class);
+        while (!pool.isStarted()) {
+            Thread.sleep(1);
+        }
+        return context;
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        context.close();
+    }
+}
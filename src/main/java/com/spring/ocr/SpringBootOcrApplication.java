@@ -1,13 +1,20 @@
 package com.spring.ocr;
 
+import com.spring.ocr.bootstrap.OpenCvInitializerComponent;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
 public class SpringBootOcrApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(SpringBootOcrApplication.class, args);
+        OpenCvInitializerComponent.loadAsync();
+        ConfigurableApplicationContext context = SpringApplication.run(SpringBootOcrApplication.class, args);
+        // The class list of the AppCDS archive is recorded by starting the application once, see the cds profile
+        if (context.getEnvironment().getProperty("ocr.startup.training-run", Boolean.class, false)) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 
 }
@@ -0,0 +1,210 @@
+package com.spring.ocr.admission;
+
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.error.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control weighted by decoded pixels.
+ * Images reserve as many pixels of {@code ocr.admission.max-pixels} as they decode to, so a burst of large uploads
+ * is held back before it is decoded instead of exhausting CPU and native memory.
+ * Images that do not fit wait in first come first served order, at most {@code ocr.admission.queue-size} of them
+ * and for at most {@code ocr.admission.max-wait}, anything beyond is rejected with 429 and an estimated Retry-After.
+ * Work that was accepted before it is processed, such as jobs and document pages, waits in the same line without these limits.
+ * <p>
+ * Images are admitted with the full pixel count of their header, not the smaller size a JPEG may be decoded at.
+ * That size follows from the text height measured on a decoded preview, which is the work admission holds back,
+ * and PNG images as well as JPEG images whose text cannot be measured are decoded at full size anyway.
+ *
+ * <pre>
+ * try (PixelAdmission.Permit permit = pixelAdmission.admit(header.getPixels())) {
+ *     ...
+ * }
+ * </pre>
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PixelAdmission {
+
+    boolean enabled;
+    int capacity;
+    int queueSize;
+    Duration maxWait;
+
+    Semaphore pixels;
+    AtomicInteger waiting = new AtomicInteger();
+    AtomicLong waitingPixels = new AtomicLong();
+    // Exponentially weighted mean time an image holds its pixels, used to estimate Retry-After
+    AtomicLong meanHoldMillis = new AtomicLong(1000);
+
+    Timer waitTimer;
+    Counter queueFull;
+    Counter timedOut;
+
+    public PixelAdmission(Environment environment, TesseractEnginePool tesseractEnginePool, MeterRegistry meterRegistry) {
+        this.enabled = environment.getProperty("ocr.admission.enabled", Boolean.class, true);
+        long maxPixels = environment.getProperty("ocr.admission.max-pixels", Long.class,
+                tesseractEnginePool.getSize() * 16_000_000L);
+        this.capacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxPixels));
+        this.queueSize = environment.getProperty("ocr.admission.queue-size", Integer.class, 100);
+        this.maxWait = environment.getProperty("ocr.admission.max-wait", Duration.class, Duration.ofSeconds(10));
+        this.pixels = new Semaphore(capacity, true);
+
+        Gauge.builder("ocr.admission.capacity", () -> capacity)
+                .description("Decoded pixels that may be processed at the same time")
+                .baseUnit("pixels")
+                .register(meterRegistry);
+        Gauge.builder("ocr.admission.in-use", () -> capacity - pixels.availablePermits())
+                .description("Decoded pixels of the images being processed")
+                .baseUnit("pixels")
+                .register(meterRegistry);
+        Gauge.builder("ocr.admission.queue", waiting, AtomicInteger::get)
+                .description("Images waiting for admission")
+                .register(meterRegistry);
+        Gauge.builder("ocr.admission.queue.pixels", waitingPixels, AtomicLong::get)
+                .description("Decoded pixels of the images waiting for admission")
+                .baseUnit("pixels")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("ocr.admission.wait")
+                .description("Time images waited for admission")
+                .register(meterRegistry);
+        this.queueFull = rejected(meterRegistry, "queue-full");
+        this.timedOut = rejected(meterRegistry, "timeout");
+        log.info("OCR admission {} with capacity {} pixels, queue size {}, max wait {}",
+                enabled ? "enabled" : "disabled", capacity, queueSize, maxWait);
+    }
+
+    /**
+     * Reserve capacity for an image, waiting in line when the capacity is taken
+     * @param imagePixels decoded pixels of the image, larger images take the whole capacity
+     * @return the reservation, to be closed when the image is done
+     * @throws TooManyRequestsException when the queue is full or the image was not admitted within the max wait
+     */
+    public Permit admit(long imagePixels) {
+        if (!enabled) {
+            return new Permit(0);
+        }
+        int permits = permits(imagePixels);
+        // A timed acquire keeps the order of the images already waiting, unlike tryAcquire(int)
+        if (acquire(permits, 0)) {
+            waitTimer.record(0, TimeUnit.NANOSECONDS);
+            return new Permit(permits);
+        }
+        if (waiting.incrementAndGet() > queueSize) {
+            waiting.decrementAndGet();
+            queueFull.increment();
+            throw new TooManyRequestsException("OCR admission queue is full", retryAfter(permits));
+        }
+        waitingPixels.addAndGet(permits);
+        long start = System.nanoTime();
+        boolean admitted;
+        try {
+            admitted = acquire(permits, maxWait.toNanos());
+        } finally {
+            waiting.decrementAndGet();
+            waitingPixels.addAndGet(-permits);
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!admitted) {
+            timedOut.increment();
+            throw new TooManyRequestsException("OCR capacity was not available within " + maxWait.toMillis() + " ms", retryAfter(permits));
+        }
+        return new Permit(permits);
+    }
+
+    /**
+     * Reserve capacity for work that was accepted already, waiting in line with the images of requests for as long as it takes
+     * It is not counted against the queue size, the callers bound how much such work waits.
+     * @param imagePixels decoded pixels of the image, larger images take the whole capacity
+     * @return the reservation, to be closed when the image is done
+     * @throws IllegalStateException when the thread is interrupted while waiting
+     */
+    public Permit await(long imagePixels) {
+        if (!enabled) {
+            return new Permit(0);
+        }
+        int permits = permits(imagePixels);
+        waitingPixels.addAndGet(permits);
+        long start = System.nanoTime();
+        try {
+            pixels.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for OCR capacity", e);
+        } finally {
+            waitingPixels.addAndGet(-permits);
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return new Permit(permits);
+    }
+
+    private int permits(long imagePixels) {
+        return (int) Math.max(1, Math.min(capacity, imagePixels));
+    }
+
+    private boolean acquire(int permits, long timeoutNanos) {
+        try {
+            return pixels.tryAcquire(permits, timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Time until the pixels already waiting and the rejected image should have been processed,
+     * the whole capacity turns over about once per mean hold time
+     * @param permits
+     * @return
+     */
+    private Duration retryAfter(int permits) {
+        long millis = (waitingPixels.get() + permits) * meanHoldMillis.get() / capacity;
+        return Duration.ofSeconds(Math.max(1, (millis + 999) / 1000));
+    }
+
+    private static Counter rejected(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("ocr.admission.rejected")
+                .description("Images rejected by admission control")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Pixels reserved for one image, released on close
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public class Permit implements AutoCloseable {
+
+        final int permits;
+        final long start = System.nanoTime();
+        boolean released;
+
+        @Override
+        public void close() {
+            if (released || permits == 0) {
+                return;
+            }
+            released = true;
+            pixels.release(permits);
+            long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            meanHoldMillis.updateAndGet(mean -> mean + (millis - mean) / 8);
+        }
+    }
+}
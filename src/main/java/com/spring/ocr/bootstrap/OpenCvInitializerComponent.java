@@ -4,26 +4,48 @@ package com.spring.ocr.bootstrap;
 import lombok.extern.slf4j.Slf4j;
 import nu.pattern.OpenCV;
 import org.opencv.core.Core;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
+@Lazy(false)
 @Component
 public class OpenCvInitializerComponent {
 
-    static {
-        try {
-            OpenCV.loadShared();
-            System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
-        } catch (UnsatisfiedLinkError ignore) {
-            // After using spring-dev-tools, the context will be loaded multiple times, so here will throw the exception that the link library has been loaded.
-            // If there is this exception, the link library has been loaded, you can directly swallow the exception.
-        }
+    /**
+     * Extract and load the OpenCV native library on a background thread, the first call starts it
+     * Called first thing in main so the library loads while the Spring context starts.
+     * @return
+     */
+    public static CompletableFuture<Void> loadAsync() {
+        return Loader.LOADED;
     }
 
     @PostConstruct
     private void init() {
+        loadAsync().join();
         log.info("OpenCV Version: " + Core.VERSION);
     }
+
+    private static final class Loader {
+
+        static final CompletableFuture<Void> LOADED = CompletableFuture.runAsync(Loader::load, task -> {
+            Thread thread = new Thread(task, "opencv-loader");
+            thread.setDaemon(true);
+            thread.start();
+        });
+
+        private static void load() {
+            try {
+                OpenCV.loadShared();
+                System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+            } catch (UnsatisfiedLinkError ignore) {
+                // After using spring-dev-tools, the context will be loaded multiple times, so here will throw the exception that the link library has been loaded.
+                // If there is this exception, the link library has been loaded, you can directly swallow the exception.
+            }
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package com.spring.ocr.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spring.ocr.engine.RecognizedText;
+import com.spring.ocr.engine.TextLine;
+import com.spring.ocr.engine.TextWord;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Recognized text, and the layout when it was requested, keyed by the content of the uploaded image and the engine configuration that produced it.
+ * Eviction is size based (Caffeine's W-TinyLFU) and bounded by both memory weight and entry count:
+ * every entry weighs at least {@code max-weight / max-entries}, so the weight limit also caps the number of entries.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OcrResultCache implements MeterBinder {
+
+    // Rough size of the key, the entry and the String headers
+    static final int ENTRY_OVERHEAD = 160;
+    // Rough size of a line or word with its box, text header and list slot
+    static final int BOX_OVERHEAD = 96;
+
+    boolean enabled;
+    Cache<String, RecognizedText> cache;
+
+    public OcrResultCache(Environment environment) {
+        this.enabled = environment.getProperty("ocr.cache.enabled", Boolean.class, true);
+        long maxWeight = environment.getProperty("ocr.cache.max-weight", DataSize.class, DataSize.ofMegabytes(64)).toBytes();
+        long maxEntries = environment.getProperty("ocr.cache.max-entries", Long.class, 10000L);
+        int minWeight = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxWeight / maxEntries));
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .<String, RecognizedText>weigher((key, result) -> Math.max(minWeight, weight(result)))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Key of the result of an image, computed once and passed to {@link #getIfPresent(String)} and {@link #put(String, RecognizedText)}
+     * @param image encoded image as uploaded
+     * @param engineConfig everything besides the image that changes the recognized text
+     * @return null when the cache is disabled, so the image is not hashed
+     */
+    public String key(ByteBuffer image, String engineConfig) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(image.duplicate());
+            digest.update(engineConfig.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The cached result for a key, without recognizing anything
+     * @param key
+     * @return null when the result is not cached
+     */
+    public RecognizedText getIfPresent(String key) {
+        return key == null ? null : cache.getIfPresent(key);
+    }
+
+    /**
+     * Cache the result recognized for a key
+     * @param key null when the cache is disabled
+     * @param result
+     */
+    public void put(String key, RecognizedText result) {
+        if (key != null) {
+            cache.put(key, result);
+        }
+    }
+
+    private static int weight(RecognizedText result) {
+        long weight = ENTRY_OVERHEAD + 2L * result.getText().length();
+        if (result.getLines() != null) {
+            for (TextLine line : result.getLines()) {
+                weight += BOX_OVERHEAD + 2L * line.getText().length();
+                for (TextWord word : line.getWords()) {
+                    weight += BOX_OVERHEAD + 2L * word.getText().length();
+                }
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics(cache, "ocr.results", Tags.empty()).bindTo(registry);
+    }
+}
@@ -0,0 +1,24 @@
+package com.spring.ocr.config;
+
+import com.spring.ocr.util.MatScope;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder openCvMatMetrics() {
+        return registry -> {
+            Gauge.builder("opencv.mats.live", MatScope::liveMats)
+                    .description("Tracked OpenCV mats whose native memory has not been released")
+                    .register(registry);
+            Gauge.builder("opencv.mats.live.bytes", MatScope::liveBytes)
+                    .description("Native pixel memory held by tracked OpenCV mats")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,141 @@
+package com.spring.ocr.config;
+
+import com.spring.ocr.engine.TesseractEnginePool;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Slf4j
+@Configuration
+@EnableScheduling
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OcrExecutorConfig {
+
+    final Environment environment;
+
+    /**
+     * Spring Boot only creates its default executor when no other executor is defined, so it is declared here as well
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * Workers that preprocess and recognize images, one per tesseract engine
+     * They are sized independently of the Tomcat request threads, which only hand work over.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor ocrTaskExecutor(TesseractEnginePool tesseractEnginePool) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(tesseractEnginePool.getSize());
+        executor.setMaxPoolSize(tesseractEnginePool.getSize());
+        executor.setQueueCapacity(environment.getProperty("ocr.executor.queue-capacity", Integer.class, Integer.MAX_VALUE));
+        executor.setThreadNamePrefix("ocr-");
+        executor.setTaskDecorator(requestContext());
+        return executor;
+    }
+
+    /**
+     * Threads that read uploads and wait for admission before an image takes an OCR worker
+     * With {@code ocr.threads.virtual} on a JDK that has virtual threads every task gets its own virtual thread,
+     * otherwise a pool of {@code ocr.io.threads} platform threads is used.
+     */
+    @Bean
+    public AsyncTaskExecutor ocrIoExecutor() {
+        Optional<ExecutorService> virtualThreads = virtualThreads();
+        if (virtualThreads.isPresent()) {
+            TaskExecutorAdapter executor = new TaskExecutorAdapter(virtualThreads.get());
+            executor.setTaskDecorator(requestContext());
+            return executor;
+        }
+        int threads = environment.getProperty("ocr.io.threads", Integer.class, 64);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("ocr-io-");
+        executor.setTaskDecorator(requestContext());
+        return executor;
+    }
+
+    /**
+     * Serve requests on virtual threads with {@code ocr.threads.virtual}, so slow clients do not hold platform threads
+     */
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> tomcatVirtualThreads() {
+        return factory -> virtualThreads().ifPresent(executor ->
+                factory.addProtocolHandlerCustomizers(protocolHandler -> protocolHandler.setExecutor(executor)));
+    }
+
+    /**
+     * Workers for asynchronous jobs, a full queue rejects new jobs instead of buffering them
+     * A job waits for admission and hands its image to the OCR workers, so jobs never use more engines than the pool has.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor ocrJobExecutor(TesseractEnginePool tesseractEnginePool) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(tesseractEnginePool.getSize());
+        executor.setMaxPoolSize(tesseractEnginePool.getSize());
+        executor.setQueueCapacity(environment.getProperty("ocr.jobs.queue-capacity", Integer.class, 100));
+        executor.setThreadNamePrefix("ocr-job-");
+        return executor;
+    }
+
+    /**
+     * Stage timings of work handed to another thread reach the Server-Timing header of the request that submitted it
+     */
+    private static TaskDecorator requestContext() {
+        return task -> {
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            // The attributes of the request thread become inactive once an asynchronous handler has returned
+            RequestAttributes handedOver = attributes instanceof ServletRequestAttributes
+                    ? new ServletRequestAttributes(((ServletRequestAttributes) attributes).getRequest())
+                    : attributes;
+            return () -> {
+                RequestContextHolder.setRequestAttributes(handedOver);
+                try {
+                    task.run();
+                } finally {
+                    RequestContextHolder.resetRequestAttributes();
+                }
+            };
+        };
+    }
+
+    /**
+     * A virtual thread per task executor, looked up reflectively as the code is built for Java 11
+     */
+    private Optional<ExecutorService> virtualThreads() {
+        if (!environment.getProperty("ocr.threads.virtual", Boolean.class, false)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not available on Java {}, platform threads are used", Runtime.version());
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.spring.ocr.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spring.ocr.controller.reactive.OcrReactiveHandler;
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.error.ExceptionTranslator;
+import com.spring.ocr.metrics.OcrMetrics;
+import com.spring.ocr.preprocess.PreprocessProfiles;
+import com.spring.ocr.service.OcrService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.multipart.DefaultPartHttpMessageReader;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+/**
+ * A Netty server next to Tomcat that serves the image extraction endpoints reactively on {@code ocr.reactive.port}
+ * Enabled with {@code ocr.reactive.enabled}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ocr.reactive.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ReactiveServerConfig {
+
+    final Environment environment;
+
+    @Bean
+    public OcrReactiveHandler ocrReactiveHandler(OcrService ocrService, PreprocessProfiles preprocessProfiles, TesseractEnginePool tesseractEnginePool,
+                                                 OcrMetrics ocrMetrics, ExceptionTranslator exceptionTranslator) {
+        return new OcrReactiveHandler(ocrService, preprocessProfiles, tesseractEnginePool, ocrMetrics, exceptionTranslator, environment);
+    }
+
+    @Lazy(false)
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public WebServer reactiveWebServer(OcrReactiveHandler ocrReactiveHandler, ObjectMapper objectMapper) {
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    // Parts are handed over chunk by chunk as they arrive instead of being buffered in memory or on disk
+                    DefaultPartHttpMessageReader parts = new DefaultPartHttpMessageReader();
+                    parts.setStreaming(true);
+                    codecs.defaultCodecs().multipartReader(parts);
+                })
+                .build();
+        NettyReactiveWebServerFactory factory = new NettyReactiveWebServerFactory(
+                environment.getProperty("ocr.reactive.port", Integer.class, 9091));
+        return factory.getWebServer(RouterFunctions.toHttpHandler(ocrReactiveHandler.routes(), strategies));
+    }
+}
@@ -1,13 +1,23 @@
 package com.spring.ocr.config;
 
+import com.spring.ocr.engine.TesseractEngineFactory;
+import com.spring.ocr.engine.TesseractEnginePool;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
-import net.sourceforge.tess4j.Tesseract;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.env.Environment;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 @Configuration
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
@@ -15,12 +25,33 @@ public class TesseractConfig {
 
     final Environment environment;
 
+    @Lazy(false)
+    @Bean(destroyMethod = "close")
+    public TesseractEnginePool tesseractEnginePool() {
+        TesseractEngineFactory factory = new TesseractEngineFactory(
+                environment.getProperty("tesseract.data.path"),
+                Map.of("user_defined_dpi", environment.getProperty("tesseract.data.dpi")));
+        String language = environment.getProperty("tesseract.data.language");
+        TesseractEnginePool pool = new TesseractEnginePool(factory,
+                environment.getProperty("tesseract.pool.size", Integer.class, Runtime.getRuntime().availableProcessors()),
+                environment.getProperty("tesseract.pool.borrow-timeout", Duration.class, Duration.ofSeconds(30)),
+                environment.getProperty("tesseract.pool.idle-timeout", Duration.class, Duration.ofMinutes(10)),
+                language,
+                environment.getProperty("ocr.languages.max-combined", Integer.class, 3),
+                new LinkedHashSet<>(Arrays.asList(environment.getProperty("tesseract.pool.preload", String[].class, new String[]{language}))));
+        if (environment.getProperty("tesseract.pool.prestart", Boolean.class, true)) {
+            CompletableFuture<Void> started = pool.prestart();
+            // In the background the traineddata loads while the rest of the context starts, readiness waits for it
+            if (!environment.getProperty("tesseract.pool.prestart-async", Boolean.class, false)) {
+                started.join();
+            }
+        }
+        return pool;
+    }
+
     @Bean
-    public Tesseract tesseract() {
-        Tesseract tesseract = new Tesseract();
-        tesseract.setDatapath(environment.getProperty("tesseract.data.path"));
-        tesseract.setLanguage(environment.getProperty("tesseract.data.language"));
-        tesseract.setTessVariable("user_defined_dpi", environment.getProperty("tesseract.data.dpi"));
-        return tesseract;
+    public HealthIndicator tesseractHealthIndicator(TesseractEnginePool tesseractEnginePool) {
+        return () -> tesseractEnginePool.isStarted() ? Health.up().build()
+                : Health.outOfService().withDetail("reason", "Tesseract engines are still loading").build();
     }
 }
@@ -0,0 +1,184 @@
+package com.spring.ocr.controller.reactive;
+
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.error.ExceptionTranslator;
+import com.spring.ocr.error.TooManyRequestsException;
+import com.spring.ocr.error.UnsupportedImageException;
+import com.spring.ocr.metrics.OcrMetrics;
+import com.spring.ocr.model.request.OcrOptions;
+import com.spring.ocr.model.response.ImageTextDto;
+import com.spring.ocr.preprocess.PreprocessProfiles;
+import com.spring.ocr.service.OcrService;
+import com.spring.ocr.util.BufferUtil;
+import com.spring.ocr.util.ImageHeader;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.Part;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.zalando.problem.Status;
+import org.zalando.problem.ThrowableProblem;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The image extraction endpoints of {@link com.spring.ocr.controller.rest.OcrController} as WebFlux functions
+ * Uploads are copied into a single direct buffer as their chunks arrive on the event loop, so a slow client holds no thread.
+ * Admission and recognition run on the same bounded executors as the servlet endpoints.
+ * Like the servlet endpoints, uploads are recognized as PNG or JPEG by their magic bytes, whatever content type the client sends,
+ * and their dimensions are checked against the image limits by {@link OcrService#submitImage} before they are admitted.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OcrReactiveHandler {
+
+    static final int MAGIC_BYTES = 8;
+    static final MediaType[] IMAGE_TYPES = {MediaType.IMAGE_PNG, MediaType.valueOf("image/jpg"), MediaType.IMAGE_JPEG};
+
+    final OcrService ocrService;
+    final PreprocessProfiles preprocessProfiles;
+    final TesseractEnginePool tesseractEnginePool;
+    final OcrMetrics ocrMetrics;
+    final ExceptionTranslator exceptionTranslator;
+    final Environment environment;
+
+    public RouterFunction<ServerResponse> routes() {
+        String path = environment.getProperty("server.servlet.context-path", "") + "/versions/1/images/extract";
+        return RouterFunctions.route()
+                .POST(path, RequestPredicates.contentType(MediaType.MULTIPART_FORM_DATA), this::extractTextFromImage)
+                .POST(path, RequestPredicates.contentType(IMAGE_TYPES), this::extractTextFromImageBody)
+                .onError(Throwable.class, this::problem)
+                .build();
+    }
+
+    /**
+     * Extract text from the image in the {@code file} part, other parts are skipped without being buffered
+     * @param request
+     * @return
+     */
+    public Mono<ServerResponse> extractTextFromImage(ServerRequest request) {
+        return Mono.fromCallable(() -> options(request))
+                .flatMap(options -> request.body(BodyExtractors.toParts())
+                        .concatMap(part -> part instanceof FilePart && "file".equals(part.name())
+                                ? extractTextFromPart((FilePart) part, options)
+                                : discard(part))
+                        .next())
+                .switchIfEmpty(Mono.error(() -> new UnsupportedImageException("A PNG or JPG image is required in the file part")))
+                .flatMap(result -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(result));
+    }
+
+    /**
+     * Extract text from an image sent as the request body
+     * @param request
+     * @return
+     */
+    public Mono<ServerResponse> extractTextFromImageBody(ServerRequest request) {
+        return Mono.fromCallable(() -> options(request))
+                .flatMap(options -> read(sniff(request.body(BodyExtractors.toDataBuffers())), request.headers().contentLength().orElse(-1))
+                        .flatMap(image -> Mono.fromFuture(() ->
+                                ocrService.submitImage(request.queryParam("fileName").orElse(null), image, options))))
+                .flatMap(result -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(result));
+    }
+
+    private Mono<ImageTextDto> extractTextFromPart(FilePart part, OcrOptions options) {
+        return read(sniff(part.content()), -1)
+                .flatMap(image -> Mono.fromFuture(() -> ocrService.submitImage(part.filename(), image, options)));
+    }
+
+    private static Mono<ImageTextDto> discard(Part part) {
+        return part.content()
+                .doOnNext(DataBufferUtils::release)
+                .then(Mono.empty());
+    }
+
+    /**
+     * Reject an upload whose first chunk does not start like a PNG or JPEG before the rest of it is buffered
+     */
+    private static Flux<DataBuffer> sniff(Flux<DataBuffer> content) {
+        return content.switchOnFirst((first, chunks) -> {
+            if (first.hasValue()) {
+                ByteBuffer head = first.get().asByteBuffer();
+                // A first chunk too short to tell is left to the header check before admission
+                if (head.remaining() >= MAGIC_BYTES && ImageHeader.format(head) == null) {
+                    return chunks.take(1)
+                            .doOnNext(DataBufferUtils::release)
+                            .thenMany(Flux.error(new UnsupportedImageException("PNG or JPG images are allowed")));
+                }
+            }
+            return chunks;
+        });
+    }
+
+    /**
+     * Copy the chunks of an upload into one direct buffer and release them as they arrive
+     */
+    private Mono<ByteBuffer> read(Flux<DataBuffer> content, long size) {
+        long maxSize = environment.getProperty("ocr.upload.max-size", DataSize.class, DataSize.ofMegabytes(200)).toBytes();
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return content
+                    .reduce(BufferUtil.allocateDirect(size, maxSize), (image, chunk) -> {
+                        try {
+                            return BufferUtil.append(image, chunk.asByteBuffer(), maxSize);
+                        } finally {
+                            DataBufferUtils.release(chunk);
+                        }
+                    })
+                    .map(image -> {
+                        image.flip();
+                        ocrMetrics.read(image, System.nanoTime() - start);
+                        return image;
+                    });
+        });
+    }
+
+    /**
+     * Options from the query, an unknown profile or language is rejected before the upload is read
+     */
+    private OcrOptions options(ServerRequest request) {
+        OcrOptions options = OcrOptions.builder()
+                .profile(request.queryParam("profile").orElse(null))
+                .layout(request.queryParam("layout").map(Boolean::parseBoolean).orElse(false))
+                .language(request.queryParam("language").orElse(null))
+                .build();
+        preprocessProfiles.get(options.getProfile());
+        tesseractEnginePool.language(options.getLanguage());
+        return options;
+    }
+
+    /**
+     * Errors are answered with the same problem documents as the servlet endpoints
+     */
+    private Mono<ServerResponse> problem(Throwable throwable, ServerRequest request) {
+        Throwable error = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        ThrowableProblem problem = error instanceof TooManyRequestsException
+                ? exceptionTranslator.toProblem(error, Status.TOO_MANY_REQUESTS)
+                : exceptionTranslator.toProblem(error);
+        int status = problem.getStatus() != null ? problem.getStatus().getStatusCode() : Status.INTERNAL_SERVER_ERROR.getStatusCode();
+        if (status >= Status.INTERNAL_SERVER_ERROR.getStatusCode()) {
+            log.error(problem.getTitle(), error);
+        }
+        ServerResponse.BodyBuilder response = ServerResponse.status(status).contentType(MediaType.APPLICATION_PROBLEM_JSON);
+        if (error instanceof TooManyRequestsException) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(((TooManyRequestsException) error).getRetryAfter().getSeconds()));
+        }
+        return response.bodyValue(exceptionTranslator.enrich(problem, request.path()));
+    }
+}
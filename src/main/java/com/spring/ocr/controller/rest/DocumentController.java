@@ -0,0 +1,83 @@
+package com.spring.ocr.controller.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spring.ocr.document.DocumentPages;
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.model.request.OcrOptions;
+import com.spring.ocr.model.response.PageTextDto;
+import com.spring.ocr.preprocess.PreprocessProfiles;
+import com.spring.ocr.service.DocumentOcrService;
+import com.spring.ocr.validator.ValidDocument;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springdoc.api.annotations.ParameterObject;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+@Tag(name = "ocr-documents", description = "Retrieve and process multi-page documents")
+@RestController
+@Validated
+@RequestMapping("/versions/1")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DocumentController {
+
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    final DocumentOcrService documentOcrService;
+    final PreprocessProfiles preprocessProfiles;
+    final TesseractEnginePool tesseractEnginePool;
+    final ObjectMapper objectMapper;
+
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ok",content = @Content(mediaType = APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = PageTextDto.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request",content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error",content = @Content)
+
+    })
+    @Operation(summary = "Extract text from a PDF, TIFF or Image document",
+            description = "Pages are processed in parallel and streamed back in page order as newline delimited JSON, a page that fails carries an error instead of text")
+    @PostMapping(value = "/documents/extract", consumes = {"multipart/form-data"})
+    public ResponseEntity<StreamingResponseBody> extractTextFromDocument(@ValidDocument @RequestPart("file") MultipartFile file,
+                                                                 @ParameterObject @ModelAttribute OcrOptions options) throws IOException {
+        // Once streaming has started the status can no longer change, so the profile and language are checked first
+        preprocessProfiles.get(options.getProfile());
+        tesseractEnginePool.language(options.getLanguage());
+        DocumentPages pages = documentOcrService.openDocument(file);
+        String fileName = file.getOriginalFilename();
+        StreamingResponseBody body = out -> {
+            try (DocumentPages document = pages) {
+                documentOcrService.extractTextFromPages(fileName, document, options, page -> writeLine(out, page));
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, APPLICATION_NDJSON_VALUE)
+                .body(body);
+    }
+
+    private void writeLine(OutputStream out, PageTextDto page) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(page));
+            out.write('\n');
+            // Every page is sent as soon as it is recognized
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.spring.ocr.controller.rest;
 
+import com.spring.ocr.model.request.OcrOptions;
 import com.spring.ocr.model.response.ImageTextDto;
 import com.spring.ocr.service.OcrService;
 import com.spring.ocr.validator.ValidImage;
@@ -13,12 +14,16 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springdoc.api.annotations.ParameterObject;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Tag(name = "ocr", description = "Retrieve and process images")
 @RestController
@@ -33,14 +38,47 @@ public class OcrController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Ok",content = @Content(array = @ArraySchema(schema = @Schema(implementation = ImageTextDto.class)))),
             @ApiResponse(responseCode = "400", description = "Bad Request",content = @Content),
+            @ApiResponse(responseCode = "429", description = "Too Many Requests",content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal Server Error",content = @Content)
 
     })
-    @Operation(summary = "Extract text from Image")
+    @Operation(summary = "Extract text from Image", description = "The request thread is released while the image is recognized")
     @PostMapping(value = "/images/extract", consumes = {"multipart/form-data"})
     @ResponseStatus(value = HttpStatus.OK)
-    public ImageTextDto extractTextFromImage(@ValidImage @RequestPart("file") MultipartFile file) throws IOException {
-        return ocrService.extractTextFromImage(file);
+    public CompletableFuture<ImageTextDto> extractTextFromImage(@ValidImage @RequestPart("file") MultipartFile file,
+                                                                @ParameterObject @ModelAttribute OcrOptions options) {
+        return ocrService.extractTextFromImage(file, options);
+    }
+
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ok",content = @Content(schema = @Schema(implementation = ImageTextDto.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request",content = @Content),
+            @ApiResponse(responseCode = "413", description = "Payload Too Large",content = @Content),
+            @ApiResponse(responseCode = "429", description = "Too Many Requests",content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error",content = @Content)
+
+    })
+    @Operation(summary = "Extract text from Image sent as the request body", description = "The body is streamed into the decoder without multipart parsing, the request thread is released while the image is read and recognized")
+    @PostMapping(value = "/images/extract", consumes = {"image/png", "image/jpg", "image/jpeg"})
+    @ResponseStatus(value = HttpStatus.OK)
+    public CompletableFuture<ImageTextDto> extractTextFromImageBody(@RequestParam(value = "fileName", required = false) String fileName,
+                                                                    @ParameterObject @ModelAttribute OcrOptions options,
+                                                                    HttpServletRequest request) throws IOException {
+        return ocrService.extractTextFromImage(fileName, request.getInputStream(), request.getContentLengthLong(), options);
+    }
+
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ok",content = @Content(array = @ArraySchema(schema = @Schema(implementation = ImageTextDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Bad Request",content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error",content = @Content)
+
+    })
+    @Operation(summary = "Extract text from multiple Images", description = "Images are processed in parallel and returned in upload order, an image that fails carries an error instead of text")
+    @PostMapping(value = "/images/extract/batch", consumes = {"multipart/form-data"})
+    @ResponseStatus(value = HttpStatus.OK)
+    public CompletableFuture<List<ImageTextDto>> extractTextFromImages(@RequestPart("files") List<@ValidImage MultipartFile> files,
+                                                                       @ParameterObject @ModelAttribute OcrOptions options) {
+        return ocrService.extractTextFromImages(files, options);
     }
 
 }
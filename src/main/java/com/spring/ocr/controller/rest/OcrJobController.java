@@ -0,0 +1,81 @@
+package com.spring.ocr.controller.rest;
+
+import com.spring.ocr.model.request.OcrOptions;
+import com.spring.ocr.model.response.ImageTextDto;
+import com.spring.ocr.model.response.OcrJobDto;
+import com.spring.ocr.service.OcrJobService;
+import com.spring.ocr.validator.ValidImage;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springdoc.api.annotations.ParameterObject;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+
+@Tag(name = "ocr-jobs", description = "Submit images for asynchronous processing and poll for the result")
+@RestController
+@Validated
+@RequestMapping("/versions/1")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OcrJobController {
+
+    final OcrJobService ocrJobService;
+
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Accepted",content = @Content(schema = @Schema(implementation = OcrJobDto.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request",content = @Content),
+            @ApiResponse(responseCode = "429", description = "Too Many Requests",content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error",content = @Content)
+
+    })
+    @Operation(summary = "Submit an Image for text extraction")
+    @PostMapping(value = "/jobs", consumes = {"multipart/form-data"})
+    public ResponseEntity<OcrJobDto> submitJob(@ValidImage @RequestPart("file") MultipartFile file,
+                                               @ParameterObject @ModelAttribute OcrOptions options) throws IOException {
+        OcrJobDto job = ocrJobService.submit(file, options);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(job.getId()).toUri())
+                .body(job);
+    }
+
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ok",content = @Content(schema = @Schema(implementation = OcrJobDto.class))),
+            @ApiResponse(responseCode = "404", description = "Not Found",content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error",content = @Content)
+
+    })
+    @Operation(summary = "Get the status of a job")
+    @GetMapping("/jobs/{id}")
+    @ResponseStatus(value = HttpStatus.OK)
+    public OcrJobDto getJob(@PathVariable("id") String id) {
+        return ocrJobService.getJob(id);
+    }
+
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ok",content = @Content(schema = @Schema(implementation = ImageTextDto.class))),
+            @ApiResponse(responseCode = "404", description = "Not Found",content = @Content),
+            @ApiResponse(responseCode = "409", description = "Conflict",content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error",content = @Content)
+
+    })
+    @Operation(summary = "Get the extracted text of a finished job")
+    @GetMapping("/jobs/{id}/result")
+    @ResponseStatus(value = HttpStatus.OK)
+    public ImageTextDto getResult(@PathVariable("id") String id) {
+        return ocrJobService.getResult(id);
+    }
+
+}
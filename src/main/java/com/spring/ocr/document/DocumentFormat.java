@@ -0,0 +1,49 @@
+package com.spring.ocr.document;
+
+import com.spring.ocr.util.ImageHeader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Formats accepted as documents, recognized by their leading magic bytes instead of the content type sent by the client
+ */
+public enum DocumentFormat {
+    PDF, TIFF, PNG, JPEG;
+
+    public static final int MAGIC_BYTES = 8;
+
+    /**
+     * Recognize a document by its leading magic bytes
+     * @param in the document, its first {@link #MAGIC_BYTES} bytes are consumed
+     * @return the format or null when it is not recognized
+     * @throws IOException
+     */
+    public static DocumentFormat read(InputStream in) throws IOException {
+        return detect(ByteBuffer.wrap(in.readNBytes(MAGIC_BYTES)));
+    }
+
+    /**
+     * Recognize a document by its leading magic bytes
+     * @param document document or its first bytes between position and limit, the buffer position is not changed
+     * @return the format or null when it is not recognized
+     */
+    public static DocumentFormat detect(ByteBuffer document) {
+        ByteBuffer buffer = document.slice().order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() >= 4) {
+            int magic = buffer.getInt(0);
+            // %PDF
+            if (magic == 0x25504446) {
+                return PDF;
+            }
+            // II*\0 little endian and MM\0* big endian
+            if (magic == 0x49492A00 || magic == 0x4D4D002A) {
+                return TIFF;
+            }
+        }
+        ImageHeader.Format format = ImageHeader.format(buffer);
+        return format == null ? null : valueOf(format.name());
+    }
+}
@@ -0,0 +1,29 @@
+package com.spring.ocr.document;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * The pages of an uploaded document, rendered one at a time so only the pages being processed are held in memory.
+ * Implementations are not thread-safe, pages are read sequentially by a single thread.
+ */
+public interface DocumentPages extends AutoCloseable {
+
+    int getPageCount();
+
+    /**
+     * Format name such as pdf or tiff
+     * @return
+     */
+    String getFormat();
+
+    /**
+     * Render a page
+     * @param index zero based page index
+     * @return
+     */
+    BufferedImage readPage(int index) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,72 @@
+package com.spring.ocr.document;
+
+import com.spring.ocr.validator.ImageLimits;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Pages of an image file, multi-page for TIFF and a single page for the other formats.
+ * The dimensions of every page are checked against the {@link ImageLimits} when the file is opened, before any page is decoded.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ImageDocumentPages implements DocumentPages {
+
+    ImageInputStream input;
+    ImageReader reader;
+    int pageCount;
+
+    public ImageDocumentPages(File file, ImageLimits limits) throws IOException {
+        this.input = ImageIO.createImageInputStream(file);
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            input.close();
+            throw new IOException("Unsupported image format");
+        }
+        this.reader = readers.next();
+        reader.setInput(input, false, true);
+        try {
+            this.pageCount = reader.getNumImages(true);
+            // The dimensions come from the header of each page, before its pixels are allocated
+            for (int page = 0; page < pageCount; page++) {
+                limits.check(reader.getWidth(page), reader.getHeight(page));
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public String getFormat() {
+        try {
+            return reader.getFormatName().toLowerCase(Locale.ROOT);
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    @Override
+    public BufferedImage readPage(int index) throws IOException {
+        return reader.read(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+}
@@ -0,0 +1,64 @@
+package com.spring.ocr.document;
+
+import com.spring.ocr.validator.ImageLimits;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Pages of an image-only PDF rendered in gray at the OCR resolution.
+ * The size every page renders to is checked against the {@link ImageLimits} when the document is opened.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PdfDocumentPages implements DocumentPages {
+
+    PDDocument document;
+    PDFRenderer renderer;
+    int dpi;
+
+    public PdfDocumentPages(File file, int dpi, ImageLimits limits) throws IOException {
+        // Keep the parsed document out of the heap, it is read from the file on demand
+        this.document = PDDocument.load(file, MemoryUsageSetting.setupTempFileOnly());
+        this.renderer = new PDFRenderer(document);
+        this.dpi = dpi;
+        try {
+            // Pages are rendered at their crop box size, given in points of 1/72 inch
+            for (PDPage page : document.getPages()) {
+                PDRectangle box = page.getCropBox();
+                limits.check(Math.round(box.getWidth() * dpi / 72.0), Math.round(box.getHeight() * dpi / 72.0));
+            }
+        } catch (RuntimeException e) {
+            document.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getPageCount() {
+        return document.getNumberOfPages();
+    }
+
+    @Override
+    public String getFormat() {
+        return "pdf";
+    }
+
+    @Override
+    public BufferedImage readPage(int index) throws IOException {
+        return renderer.renderImageWithDPI(index, dpi, ImageType.GRAY);
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+}
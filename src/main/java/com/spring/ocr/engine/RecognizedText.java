@@ -0,0 +1,36 @@
+package com.spring.ocr.engine;
+
+import com.spring.ocr.util.ImageTransform;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The text of an image, together with its lines and words when the layout was requested
+ */
+@Value
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RecognizedText {
+
+    String text;
+
+    /**
+     * Lines in reading order, null when only the text was recognized
+     */
+    List<TextLine> lines;
+
+    /**
+     * The same text with the boxes of its lines and words in the image the transform maps to
+     * @param transform
+     * @return
+     */
+    public RecognizedText map(ImageTransform transform) {
+        if (lines == null || transform.isIdentity()) {
+            return this;
+        }
+        return new RecognizedText(text, lines.stream().map(line -> line.map(transform)).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,162 @@
+package com.spring.ocr.engine;
+
+import com.spring.ocr.util.OpencvUtil;
+import com.sun.jna.Pointer;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.TessAPI;
+import org.opencv.core.Mat;
+
+import java.lang.ref.Reference;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A single initialized Tesseract handle.
+ * The traineddata is loaded once in the constructor and reused for every recognition,
+ * so an engine must only be used by one thread at a time (see {@link TesseractEnginePool}).
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TesseractEngine implements AutoCloseable {
+
+    TessAPI api;
+    ITessAPI.TessBaseAPI handle;
+
+    @Getter
+    String language;
+
+    public TesseractEngine(String dataPath, String language, Map<String, String> variables) {
+        this.api = TessAPI.INSTANCE;
+        this.language = language;
+        this.handle = api.TessBaseAPICreate();
+        if (api.TessBaseAPIInit2(handle, dataPath, language, ITessAPI.TessOcrEngineMode.OEM_DEFAULT) != 0) {
+            api.TessBaseAPIDelete(handle);
+            throw new TesseractEngineException("Could not initialize tesseract for language " + language);
+        }
+        variables.forEach((name, value) -> api.TessBaseAPISetVariable(handle, name, value));
+    }
+
+    /**
+     * Recognize text from an 8-bit gray Mat
+     * The engine reads the native pixel memory of the Mat directly, no copy or image codec is involved
+     * @param mat
+     * @return
+     */
+    public String recognize(Mat mat) {
+        return withImage(mat, this::getText);
+    }
+
+    /**
+     * Recognize the text lines of an 8-bit gray Mat in reading order, with the words and confidences of every line
+     * @param mat
+     * @return
+     */
+    public List<TextLine> recognizeLines(Mat mat) {
+        return withImage(mat, this::getLines);
+    }
+
+    private <T> T withImage(Mat mat, Supplier<T> result) {
+        Mat continuous = mat.isContinuous() ? mat : mat.clone();
+        try {
+            api.TessBaseAPISetImage(handle, OpencvUtil.matToByteBuffer(continuous), continuous.cols(), continuous.rows(),
+                    (int) continuous.elemSize(), (int) (continuous.cols() * continuous.elemSize()));
+            return result.get();
+        } finally {
+            reset();
+            // The buffer does not keep the Mat reachable, its memory must not be freed before tesseract is done
+            Reference.reachabilityFence(continuous);
+            if (continuous != mat) {
+                continuous.release();
+            }
+        }
+    }
+
+    private String getText() {
+        Pointer text = api.TessBaseAPIGetUTF8Text(handle);
+        try {
+            return text == null ? "" : text.getString(0, StandardCharsets.UTF_8.name());
+        } finally {
+            if (text != null) {
+                api.TessDeleteText(text);
+            }
+        }
+    }
+
+    /**
+     * Lines with their words from one walk over the words of a single recognition
+     */
+    private List<TextLine> getLines() {
+        List<TextLine> lines = new ArrayList<>();
+        if (api.TessBaseAPIRecognize(handle, null) != 0) {
+            throw new TesseractEngineException("Tesseract could not recognize the image");
+        }
+        ITessAPI.TessResultIterator iterator = api.TessBaseAPIGetIterator(handle);
+        if (iterator == null) {
+            return lines;
+        }
+        try {
+            ITessAPI.TessPageIterator page = api.TessResultIteratorGetPageIterator(iterator);
+            IntBuffer left = IntBuffer.allocate(1);
+            IntBuffer top = IntBuffer.allocate(1);
+            IntBuffer right = IntBuffer.allocate(1);
+            IntBuffer bottom = IntBuffer.allocate(1);
+            List<TextWord> words = null;
+            do {
+                if (api.TessPageIteratorIsAtBeginningOf(page, ITessAPI.TessPageIteratorLevel.RIL_TEXTLINE) != 0) {
+                    String line = getText(iterator, ITessAPI.TessPageIteratorLevel.RIL_TEXTLINE);
+                    words = line == null ? null : new ArrayList<>();
+                    if (line != null) {
+                        api.TessPageIteratorBoundingBox(page, ITessAPI.TessPageIteratorLevel.RIL_TEXTLINE, left, top, right, bottom);
+                        lines.add(new TextLine(line.stripTrailing(),
+                                left.get(0), top.get(0), right.get(0) - left.get(0), bottom.get(0) - top.get(0),
+                                api.TessPageIteratorIsAtBeginningOf(page, ITessAPI.TessPageIteratorLevel.RIL_PARA) != 0,
+                                api.TessResultIteratorConfidence(iterator, ITessAPI.TessPageIteratorLevel.RIL_TEXTLINE),
+                                words));
+                    }
+                }
+                String word = words == null ? null : getText(iterator, ITessAPI.TessPageIteratorLevel.RIL_WORD);
+                if (word != null) {
+                    api.TessPageIteratorBoundingBox(page, ITessAPI.TessPageIteratorLevel.RIL_WORD, left, top, right, bottom);
+                    words.add(new TextWord(word,
+                            left.get(0), top.get(0), right.get(0) - left.get(0), bottom.get(0) - top.get(0),
+                            api.TessResultIteratorConfidence(iterator, ITessAPI.TessPageIteratorLevel.RIL_WORD)));
+                }
+            } while (api.TessResultIteratorNext(iterator, ITessAPI.TessPageIteratorLevel.RIL_WORD) != 0);
+        } finally {
+            api.TessResultIteratorDelete(iterator);
+        }
+        return lines;
+    }
+
+    private String getText(ITessAPI.TessResultIterator iterator, int level) {
+        Pointer text = api.TessResultIteratorGetUTF8Text(iterator, level);
+        if (text == null) {
+            return null;
+        }
+        try {
+            return text.getString(0, StandardCharsets.UTF_8.name());
+        } finally {
+            api.TessDeleteText(text);
+        }
+    }
+
+    /**
+     * Forget the previous page so results do not depend on what the engine recognized before
+     */
+    private void reset() {
+        api.TessBaseAPIClear(handle);
+        api.TessBaseAPIClearAdaptiveClassifier(handle);
+    }
+
+    @Override
+    public void close() {
+        api.TessBaseAPIEnd(handle);
+        api.TessBaseAPIDelete(handle);
+    }
+}
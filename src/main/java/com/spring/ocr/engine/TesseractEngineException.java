@@ -0,0 +1,11 @@
+package com.spring.ocr.engine;
+
+/**
+ * A tesseract engine failed, it may be left in an unknown state and is not used again
+ */
+public class TesseractEngineException extends IllegalStateException {
+
+    public TesseractEngineException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,86 @@
+package com.spring.ocr.engine;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the engines of a language, or of several languages joined with +
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TesseractEngineFactory extends BaseKeyedPooledObjectFactory<String, TesseractEngine> {
+
+    static final String TRAINEDDATA = ".traineddata";
+
+    String dataPath;
+    Map<String, String> variables;
+    Map<String, LongAdder> created = new ConcurrentHashMap<>();
+
+    @Override
+    public TesseractEngine create(String language) {
+        TesseractEngine engine = load(language);
+        created.computeIfAbsent(language, key -> new LongAdder()).increment();
+        return engine;
+    }
+
+    /**
+     * Initialize an engine, loading the traineddata of its language
+     * @param language
+     * @return
+     */
+    protected TesseractEngine load(String language) {
+        try {
+            return new TesseractEngine(dataPath, language, variables);
+        } catch (LinkageError e) {
+            // The keyed pool only gives back the capacity reserved for a failed creation on an Exception
+            throw new IllegalStateException("Tesseract could not be loaded: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public PooledObject<TesseractEngine> wrap(TesseractEngine engine) {
+        return new DefaultPooledObject<>(engine);
+    }
+
+    @Override
+    public void destroyObject(String language, PooledObject<TesseractEngine> pooledObject) {
+        pooledObject.getObject().close();
+    }
+
+    /**
+     * Number of engines created for a language so far
+     * @param language
+     * @return
+     */
+    public long getCreatedCount(String language) {
+        LongAdder count = created.get(language);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Languages with a traineddata file in the data path
+     * @return
+     */
+    public Set<String> getInstalledLanguages() {
+        File[] files = new File(dataPath).listFiles((dir, name) -> name.endsWith(TRAINEDDATA));
+        if (files == null) {
+            return new TreeSet<>();
+        }
+        return Arrays.stream(files)
+                .map(file -> file.getName().substring(0, file.getName().length() - TRAINEDDATA.length()))
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+}
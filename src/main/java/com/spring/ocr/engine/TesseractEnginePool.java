@@ -0,0 +1,324 @@
+package com.spring.ocr.engine;
+
+import com.spring.ocr.error.OcrEngineUnavailableException;
+import com.spring.ocr.error.TooManyLanguagesException;
+import com.spring.ocr.error.UnknownLanguageException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.DefaultEvictionPolicy;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded pool of initialized {@link TesseractEngine}s, keyed by language.
+ * Every recognition borrows an engine of its language for exclusive use and returns it afterwards,
+ * so up to {@code size} images are recognized in parallel across all languages.
+ * <p>
+ * The engines of a language are created on first use. Engines that stay idle for {@code idleTimeout} are evicted
+ * unless their language is preloaded, and when the pool is full idle engines of other languages make room.
+ * <p>
+ * Combined languages are keyed in a canonical form, each language once and sorted, so {@code eng+deu} and {@code deu+eng}
+ * share their engines and meters. At most {@code maxCombined} languages can be combined, which bounds the number of keys.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TesseractEnginePool implements MeterBinder, AutoCloseable {
+
+    static final Pattern LANGUAGES = Pattern.compile("[A-Za-z0-9_]+(\\+[A-Za-z0-9_]+)*");
+
+    GenericKeyedObjectPool<String, TesseractEngine> pool;
+    TesseractEngineFactory factory;
+    Duration borrowTimeout;
+    String defaultLanguage;
+    int maxCombined;
+    Set<String> preloadedLanguages;
+    Set<String> installedLanguages;
+    Map<String, LongAdder> borrowed = new ConcurrentHashMap<>();
+    Map<String, LongAdder> prestarted = new ConcurrentHashMap<>();
+
+    @NonFinal
+    volatile MeterRegistry registry;
+
+    @NonFinal
+    volatile CompletableFuture<Void> started = CompletableFuture.completedFuture(null);
+
+    public TesseractEnginePool(TesseractEngineFactory factory, int size, Duration borrowTimeout, Duration idleTimeout,
+                               String defaultLanguage, int maxCombined, Set<String> preloadedLanguages) {
+        this.preloadedLanguages = preloadedLanguages.stream()
+                .map(TesseractEnginePool::canonical)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        GenericKeyedObjectPoolConfig<TesseractEngine> config = new GenericKeyedObjectPoolConfig<>();
+        config.setMaxTotal(size);
+        config.setMaxTotalPerKey(size);
+        config.setMaxIdlePerKey(size);
+        config.setMaxWaitMillis(borrowTimeout.toMillis());
+        config.setBlockWhenExhausted(true);
+        config.setJmxEnabled(false);
+        if (!idleTimeout.isZero() && !idleTimeout.isNegative()) {
+            config.setMinEvictableIdleTimeMillis(idleTimeout.toMillis());
+            config.setTimeBetweenEvictionRunsMillis(Math.min(idleTimeout.toMillis(), Duration.ofMinutes(1).toMillis()));
+            config.setNumTestsPerEvictionRun(size);
+            DefaultEvictionPolicy<TesseractEngine> idle = new DefaultEvictionPolicy<>();
+            config.setEvictionPolicy((evictionConfig, engine, idleCount) ->
+                    !this.preloadedLanguages.contains(engine.getObject().getLanguage()) && idle.evict(evictionConfig, engine, idleCount));
+        }
+        this.pool = new GenericKeyedObjectPool<>(factory, config);
+        this.factory = factory;
+        this.borrowTimeout = borrowTimeout;
+        this.defaultLanguage = canonical(defaultLanguage);
+        this.maxCombined = maxCombined;
+        this.installedLanguages = new TreeSet<>(factory.getInstalledLanguages());
+        installedLanguages.addAll(Arrays.asList(defaultLanguage.split("\\+")));
+    }
+
+    /**
+     * Create the engines of the preloaded languages up front so their first requests do not pay for loading traineddata
+     * The pool is shared evenly between them and never filled beyond its size, the engines load in parallel.
+     * @return completes when every engine has been created or failed, see {@link #isStarted()}
+     */
+    public CompletableFuture<Void> prestart() {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, getSize()), new CustomizableThreadFactory("tesseract-prestart-"));
+        try {
+            List<CompletableFuture<Void>> languages = new ArrayList<>();
+            int remaining = getSize();
+            int left = preloadedLanguages.size();
+            for (String language : preloadedLanguages) {
+                int engines = (remaining + left - 1) / left--;
+                remaining -= engines;
+                if (engines == 0) {
+                    log.warn("Tesseract engine pool of size {} is too small to preload {}, its engines are created on first use", getSize(), language);
+                    continue;
+                }
+                languages.add(prestart(language, engines, executor));
+            }
+            started = CompletableFuture.allOf(languages.toArray(new CompletableFuture[0]));
+            return started;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private CompletableFuture<Void> prestart(String language, int engines, Executor executor) {
+        CompletableFuture<?>[] created = new CompletableFuture[engines];
+        for (int i = 0; i < engines; i++) {
+            created[i] = CompletableFuture.runAsync(() -> {
+                try {
+                    pool.addObject(language);
+                    prestarted.computeIfAbsent(language, key -> new LongAdder()).increment();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        }
+        return CompletableFuture.allOf(created).handle((ignored, e) -> {
+            if (e == null) {
+                log.info("Tesseract engine pool started with {} {} engines", pool.getNumIdle(language), language);
+            } else {
+                // Engines are created lazily on first borrow instead, which reports the error to the caller.
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.warn("Tesseract engines for " + language + " could not be pre-initialized: " + cause.getMessage());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Whether the engines of the preloaded languages have been created, true when the pool was not prestarted
+     * @return
+     */
+    public boolean isStarted() {
+        return started.isDone();
+    }
+
+    /**
+     * The language to recognize with, checked against the installed traineddata
+     * @param language one or more languages joined with +, the default language when empty
+     * @return the languages in canonical form, the key of their engines
+     */
+    public String language(String language) {
+        if (!StringUtils.hasText(language)) {
+            return defaultLanguage;
+        }
+        if (!LANGUAGES.matcher(language).matches() || !installedLanguages.containsAll(Arrays.asList(language.split("\\+")))) {
+            throw new UnknownLanguageException("Unknown language " + language + ", installed languages are " + installedLanguages);
+        }
+        String canonical = canonical(language);
+        if (canonical.split("\\+").length > maxCombined) {
+            throw new TooManyLanguagesException("At most " + maxCombined + " languages can be combined");
+        }
+        return canonical;
+    }
+
+    /**
+     * Each language once in alphabetical order
+     */
+    private static String canonical(String language) {
+        return String.join("+", new TreeSet<>(Arrays.asList(language.split("\\+"))));
+    }
+
+    /**
+     * Run work with an engine of a language borrowed from the pool
+     * The engine is discarded when the work fails with a {@link TesseractEngineException} or an Error, otherwise it is returned.
+     * @param language
+     * @param work
+     * @return
+     */
+    public <T> T execute(String language, Function<TesseractEngine, T> work) {
+        TesseractEngine engine = borrow(language);
+        T result;
+        try {
+            result = work.apply(engine);
+        } catch (TesseractEngineException | Error e) {
+            // Native and engine errors may leave the engine broken, it is replaced by a fresh one
+            invalidate(language, engine);
+            throw e;
+        } catch (RuntimeException e) {
+            // Errors of the caller's own work leave the engine intact
+            pool.returnObject(language, engine);
+            throw e;
+        }
+        pool.returnObject(language, engine);
+        return result;
+    }
+
+    private TesseractEngine borrow(String language) {
+        borrowed(language).increment();
+        try {
+            return pool.borrowObject(language);
+        } catch (NoSuchElementException e) {
+            throw new OcrEngineUnavailableException("No OCR engine became available within " + borrowTimeout.toMillis() + " ms");
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private void invalidate(String language, TesseractEngine engine) {
+        try {
+            pool.invalidateObject(language, engine);
+        } catch (Exception e) {
+            log.warn("Tesseract engine could not be invalidated: " + e.getMessage());
+        }
+    }
+
+    public int getSize() {
+        return pool.getMaxTotal();
+    }
+
+    private LongAdder borrowed(String language) {
+        return borrowed.computeIfAbsent(language, key -> {
+            LongAdder count = new LongAdder();
+            if (registry != null) {
+                bindTo(registry, key, count);
+            }
+            return count;
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("tesseract.pool.size", pool, GenericKeyedObjectPool::getMaxTotal)
+                .description("Maximum number of tesseract engines")
+                .register(registry);
+        Gauge.builder("tesseract.pool.active", pool, GenericKeyedObjectPool::getNumActive)
+                .description("Tesseract engines currently borrowed")
+                .register(registry);
+        Gauge.builder("tesseract.pool.idle", pool, GenericKeyedObjectPool::getNumIdle)
+                .description("Tesseract engines waiting for work")
+                .register(registry);
+        Gauge.builder("tesseract.pool.waiting", pool, GenericKeyedObjectPool::getNumWaiters)
+                .description("Threads waiting to borrow a tesseract engine")
+                .register(registry);
+        Gauge.builder("tesseract.pool.borrow.wait.max", pool, GenericKeyedObjectPool::getMaxBorrowWaitTimeMillis)
+                .description("Longest time a thread waited to borrow a tesseract engine")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("tesseract.pool.borrow.wait.mean", pool, GenericKeyedObjectPool::getMeanBorrowWaitTimeMillis)
+                .description("Mean time a thread waited to borrow a tesseract engine")
+                .baseUnit("milliseconds")
+                .register(registry);
+        FunctionCounter.builder("tesseract.pool.borrowed", pool, GenericKeyedObjectPool::getBorrowedCount)
+                .description("Total number of tesseract engine borrows")
+                .register(registry);
+        FunctionCounter.builder("tesseract.pool.created", pool, GenericKeyedObjectPool::getCreatedCount)
+                .description("Total number of tesseract engines created")
+                .register(registry);
+        FunctionCounter.builder("tesseract.pool.destroyed", pool, GenericKeyedObjectPool::getDestroyedCount)
+                .description("Total number of tesseract engines destroyed")
+                .register(registry);
+        this.registry = registry;
+        borrowed.forEach((language, count) -> bindTo(registry, language, count));
+        preloadedLanguages.forEach(this::borrowed);
+    }
+
+    /**
+     * Meters of the engines of one language, registered up front for preloaded languages and on first use for the others
+     */
+    private void bindTo(MeterRegistry registry, String language, LongAdder borrowed) {
+        Gauge.builder("tesseract.pool.language.active", pool, p -> p.getNumActive(language))
+                .description("Tesseract engines of a language currently borrowed")
+                .tag("language", language)
+                .register(registry);
+        Gauge.builder("tesseract.pool.language.idle", pool, p -> p.getNumIdle(language))
+                .description("Tesseract engines of a language waiting for work")
+                .tag("language", language)
+                .register(registry);
+        FunctionCounter.builder("tesseract.pool.language.borrowed", borrowed, LongAdder::sum)
+                .description("Borrows of tesseract engines of a language")
+                .tag("language", language)
+                .register(registry);
+        FunctionCounter.builder("tesseract.pool.language.created", factory, f -> f.getCreatedCount(language))
+                .description("Tesseract engines of a language created, each one loaded its traineddata")
+                .tag("language", language)
+                .register(registry);
+        Gauge.builder("tesseract.pool.language.hit.ratio", borrowed, count -> count.sum() == 0 ? 1.0
+                        : 1.0 - (double) misses(language) / count.sum())
+                .description("Share of borrows of a language served by an engine that was already loaded")
+                .tag("language", language)
+                .register(registry);
+    }
+
+    /**
+     * Engines of a language created because a borrow found none idle, engines created by {@link #prestart()} are not misses
+     * @param language
+     * @return
+     */
+    private long misses(String language) {
+        LongAdder count = prestarted.get(language);
+        return factory.getCreatedCount(language) - (count == null ? 0 : count.sum());
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
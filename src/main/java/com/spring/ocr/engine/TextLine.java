@@ -0,0 +1,59 @@
+package com.spring.ocr.engine;
+
+import com.spring.ocr.util.ImageTransform;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A recognized text line with its bounding box in image coordinates
+ */
+@Value
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TextLine {
+
+    String text;
+    int left;
+    int top;
+    int width;
+    int height;
+
+    /**
+     * The line starts a new paragraph
+     */
+    boolean paragraphStart;
+
+    /**
+     * Confidence of the engine from 0 to 100
+     */
+    float confidence;
+
+    /**
+     * Words of the line from left to right
+     */
+    List<TextWord> words;
+
+    /**
+     * The same line in an image whose rows start {@code rows} above the image it was recognized in
+     * @param rows
+     * @return
+     */
+    public TextLine moveDown(int rows) {
+        return new TextLine(text, left, top + rows, width, height, paragraphStart, confidence,
+                words.stream().map(word -> word.moveDown(rows)).collect(Collectors.toList()));
+    }
+
+    /**
+     * The same line in the image the transform maps to
+     * @param transform
+     * @return
+     */
+    public TextLine map(ImageTransform transform) {
+        int[] box = transform.box(left, top, width, height);
+        return new TextLine(text, box[0], box[1], box[2], box[3], paragraphStart, confidence,
+                words.stream().map(word -> word.map(transform)).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,162 @@
+package com.spring.ocr.engine;
+
+import com.spring.ocr.util.MatScope;
+import com.spring.ocr.util.OcrUtil;
+import com.spring.ocr.util.StageTimings;
+import com.spring.ocr.util.Tile;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Recognizes preprocessed images with the engine pool.
+ * Images above {@code ocr.tiling.min-pixels} are cut into horizontal tiles that are recognized concurrently,
+ * the lines of every tile are stitched back together from top to bottom.
+ * The layout of an image, its lines and words with boxes and confidences, is collected from the same single recognition.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TextRecognizer {
+
+    final TesseractEnginePool tesseractEnginePool;
+    final ThreadPoolTaskExecutor ocrTaskExecutor;
+    final Environment environment;
+
+    /**
+     * Recognize the text of a preprocessed 8-bit gray image
+     * @param mat
+     * @param language see {@link TesseractEnginePool#language(String)}
+     * @return
+     */
+    public String recognize(Mat mat, String language) {
+        return StageTimings.time("recognize", () -> recognize(mat, language, TesseractEngine::recognize, TextRecognizer::text));
+    }
+
+    /**
+     * Recognize the text of a preprocessed 8-bit gray image together with its lines, words and confidences
+     * Both come from the same recognition, the text is put together from the lines.
+     * @param mat
+     * @param language see {@link TesseractEnginePool#language(String)}
+     * @return
+     */
+    public RecognizedText recognizeLayout(Mat mat, String language) {
+        return StageTimings.time("recognize", () -> {
+            List<TextLine> lines = recognize(mat, language, TesseractEngine::recognizeLines, Function.identity());
+            return new RecognizedText(text(lines), lines);
+        });
+    }
+
+    private <T> T recognize(Mat mat, String language, BiFunction<TesseractEngine, Mat, T> page, Function<List<TextLine>, T> tiled) {
+        if (!environment.getProperty("ocr.tiling.enabled", Boolean.class, true)
+                || mat.total() < environment.getProperty("ocr.tiling.min-pixels", Long.class, 16_000_000L)) {
+            return tesseractEnginePool.execute(language, engine -> page.apply(engine, mat));
+        }
+        int overlap = environment.getProperty("ocr.tiling.overlap", Integer.class, 100);
+        long tilePixels = environment.getProperty("ocr.tiling.tile-pixels", Long.class, 4_000_000L);
+        int tileHeight = (int) Math.max(4L * overlap, tilePixels / mat.cols());
+        List<Tile> tiles = OcrUtil.tiles(mat, tileHeight, overlap);
+        if (tiles.size() == 1) {
+            return tesseractEnginePool.execute(language, engine -> page.apply(engine, mat));
+        }
+        log.debug("Recognizing {}x{} image in {} tiles", mat.cols(), mat.rows(), tiles.size());
+        return tiled.apply(recognizeTiles(mat, language, tiles));
+    }
+
+    /**
+     * The calling thread works through the tiles together with helpers on the OCR executor.
+     * It only waits for tiles that are being recognized, so it cannot deadlock when it runs on the executor itself.
+     */
+    private List<TextLine> recognizeTiles(Mat mat, String language, List<Tile> tiles) {
+        Mat[] bands = new Mat[tiles.size()];
+        for (int i = 0; i < bands.length; i++) {
+            bands[i] = MatScope.trackView(mat.rowRange(tiles.get(i).getTop(), tiles.get(i).getBottom()));
+        }
+        List<List<TextLine>> lines = new ArrayList<>(Collections.nCopies(tiles.size(), null));
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(tiles.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < tiles.size(); i = next.getAndIncrement()) {
+                try {
+                    if (failure.get() == null) {
+                        Mat band = bands[i];
+                        Tile tile = tiles.get(i);
+                        lines.set(i, tesseractEnginePool.execute(language, engine -> owned(engine.recognizeLines(band), tile)));
+                    }
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        int helpers = Math.min(tiles.size() - 1, tesseractEnginePool.getSize());
+        try {
+            for (int i = 0; i < helpers; i++) {
+                ocrTaskExecutor.execute(worker);
+            }
+        } catch (TaskRejectedException e) {
+            log.debug("OCR executor is saturated, remaining tiles are recognized on the calling thread");
+        }
+        worker.run();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for tiles", e);
+        }
+
+        Throwable e = failure.get();
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e != null) {
+            throw (Error) e;
+        }
+        return lines.stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lines owned by the tile in the coordinates of the whole image
+     */
+    private static List<TextLine> owned(List<TextLine> lines, Tile tile) {
+        return lines.stream()
+                .filter(line -> tile.owns(line.getTop() + line.getHeight() / 2))
+                .map(line -> line.moveDown(tile.getTop()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Text of the lines formatted like the text of a whole page
+     */
+    private static String text(List<TextLine> lines) {
+        StringBuilder text = new StringBuilder();
+        for (TextLine line : lines) {
+            if (line.isParagraphStart() && text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(line.getText()).append('\n');
+        }
+        return text.toString();
+    }
+}
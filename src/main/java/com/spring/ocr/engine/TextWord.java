@@ -0,0 +1,44 @@
+package com.spring.ocr.engine;
+
+import com.spring.ocr.util.ImageTransform;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A recognized word with its bounding box in image coordinates
+ */
+@Value
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TextWord {
+
+    String text;
+    int left;
+    int top;
+    int width;
+    int height;
+
+    /**
+     * Confidence of the engine from 0 to 100
+     */
+    float confidence;
+
+    /**
+     * The same word in an image whose rows start {@code rows} above the image it was recognized in
+     * @param rows
+     * @return
+     */
+    public TextWord moveDown(int rows) {
+        return new TextWord(text, left, top + rows, width, height, confidence);
+    }
+
+    /**
+     * The same word in the image the transform maps to
+     * @param transform
+     * @return
+     */
+    public TextWord map(ImageTransform transform) {
+        int[] box = transform.box(left, top, width, height);
+        return new TextWord(text, box[0], box[1], box[2], box[3], confidence);
+    }
+}
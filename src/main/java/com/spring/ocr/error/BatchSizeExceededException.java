@@ -0,0 +1,12 @@
+package com.spring.ocr.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BatchSizeExceededException extends RuntimeException {
+
+    public BatchSizeExceededException(String message) {
+        super(message);
+    }
+}
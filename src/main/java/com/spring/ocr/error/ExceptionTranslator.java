@@ -6,21 +6,26 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageConversionException;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
 import org.zalando.problem.DefaultProblem;
 import org.zalando.problem.Problem;
 import org.zalando.problem.ProblemBuilder;
+import org.zalando.problem.Status;
 import org.zalando.problem.StatusType;
 import org.zalando.problem.spring.web.advice.ProblemHandling;
 import org.zalando.problem.violations.ConstraintViolationProblem;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.servlet.RequestDispatcher;
 import javax.servlet.http.HttpServletRequest;
 import java.net.URI;
 import java.util.List;
@@ -39,15 +44,28 @@ public class ExceptionTranslator implements ProblemHandling{
         if (entity == null) {
             return entity;
         }
+        // The problem is the whole response, after an asynchronous dispatch the container would append its error page to it
+        request.removeAttribute(RequestDispatcher.ERROR_EXCEPTION, RequestAttributes.SCOPE_REQUEST);
         Problem problem = entity.getBody();
         if (!(problem instanceof ConstraintViolationProblem || problem instanceof DefaultProblem)) {
             return entity;
         }
+        return new ResponseEntity<>(enrich(problem, request.getNativeRequest(HttpServletRequest.class).getRequestURI()),
+            entity.getHeaders(), entity.getStatusCode());
+    }
+
+    /**
+     * Add the configured type, request path and message key to a problem, as every error response of the api carries them
+     * @param problem
+     * @param path
+     * @return
+     */
+    public Problem enrich(Problem problem, String path) {
         ProblemBuilder builder = Problem.builder()
             .withType(Problem.DEFAULT_TYPE.equals(problem.getType()) ? URI.create(environment.getProperty("problem.default.type")) : problem.getType())
             .withStatus(problem.getStatus())
             .withTitle(problem.getTitle())
-            .with(environment.getProperty("problem.path.key"), request.getNativeRequest(HttpServletRequest.class).getRequestURI());
+            .with(environment.getProperty("problem.path.key"), path);
 
         if (problem instanceof ConstraintViolationProblem) {
             builder
@@ -63,7 +81,7 @@ public class ExceptionTranslator implements ProblemHandling{
                 builder.with(environment.getProperty("problem.message.key"), "error.http." + problem.getStatus().getStatusCode());
             }
         }
-        return new ResponseEntity<>(builder.build(), entity.getHeaders(), entity.getStatusCode());
+        return builder.build();
     }
 
 
@@ -86,6 +104,14 @@ public class ExceptionTranslator implements ProblemHandling{
     }
 
 
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleTooManyRequests(TooManyRequestsException ex, NativeWebRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter().getSeconds()));
+        return create(Status.TOO_MANY_REQUESTS, ex, request, headers);
+    }
+
+
     @Override
     public ProblemBuilder prepare(final Throwable throwable, final StatusType status, final URI type) {
 
@@ -0,0 +1,12 @@
+package com.spring.ocr.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class JobNotFoundException extends RuntimeException {
+
+    public JobNotFoundException(String message) {
+        super(message);
+    }
+}
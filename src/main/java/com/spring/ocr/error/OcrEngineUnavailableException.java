@@ -0,0 +1,12 @@
+package com.spring.ocr.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class OcrEngineUnavailableException extends RuntimeException {
+
+    public OcrEngineUnavailableException(String message) {
+        super(message);
+    }
+}
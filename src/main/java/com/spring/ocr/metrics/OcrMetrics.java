@@ -0,0 +1,186 @@
+package com.spring.ocr.metrics;
+
+import com.spring.ocr.util.ImageHeader;
+import com.spring.ocr.util.ImageQuality;
+import com.spring.ocr.util.StageTimings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes the stage timings of every processed image as {@code ocr.stage} timers,
+ * tagged by stage, language, input format and megapixel bucket, together with byte and pixel counters.
+ * When {@code ocr.metrics.server-timing.enabled} is set the timings are also summed per HTTP request
+ * for the {@code Server-Timing} response header.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OcrMetrics {
+
+    static final String SERVER_TIMING_ATTRIBUTE = OcrMetrics.class.getName() + ".serverTiming";
+
+    final MeterRegistry meterRegistry;
+    final Environment environment;
+
+    /**
+     * Start collecting stage timings for an image on the current thread
+     * @return
+     */
+    public StageTimings open() {
+        return StageTimings.open(this::record);
+    }
+
+    /**
+     * Record a stage that ran outside of the timings of an image, such as rendering a document page
+     * @param stage
+     * @param format
+     * @param pixels
+     * @param nanos
+     */
+    public void record(String stage, String format, long pixels, long nanos) {
+        timer(stage, tags(null, format, pixels)).record(nanos, TimeUnit.NANOSECONDS);
+        addServerTiming(Collections.singletonMap(stage, nanos));
+    }
+
+    /**
+     * Record the time it took to read an upload into memory, tagged with the format and size its header announces
+     * @param image
+     * @param nanos
+     */
+    public void read(ByteBuffer image, long nanos) {
+        ImageHeader header = ImageHeader.read(image);
+        record("read", header != null ? header.getFormat().name().toLowerCase(Locale.ROOT) : "unknown",
+                header != null ? header.getPixels() : 0, nanos);
+    }
+
+    /**
+     * Count the profile chosen by the auto profile and record the measured quality it was chosen for
+     * @param profile
+     * @param quality
+     */
+    public void triaged(String profile, ImageQuality quality) {
+        Counter.builder("ocr.triage")
+                .description("Images by the preprocessing profile the auto profile chose")
+                .tag("profile", profile)
+                .register(meterRegistry)
+                .increment();
+        summary("noise", "Estimated noise standard deviation in gray levels", quality.getNoise());
+        summary("contrast", "Gray levels between the darkest and lightest percent of the pixels", quality.getContrast());
+        summary("sharpness", "Laplacian variance relative to the squared contrast", quality.getSharpness());
+        summary("skew", "Absolute angle of the text lines in degrees", Math.abs(quality.getSkew()));
+    }
+
+    private void summary(String name, String description, double value) {
+        DistributionSummary.builder("ocr.triage." + name)
+                .description(description)
+                .register(meterRegistry)
+                .record(value);
+    }
+
+    private void record(StageTimings timings) {
+        Tags tags = tags(timings.getLanguage(), timings.getFormat(), timings.getPixels());
+        timings.getStages().forEach((stage, nanos) -> timer(stage, tags).record(nanos, TimeUnit.NANOSECONDS));
+        Counter.builder("ocr.images.bytes")
+                .description("Encoded image bytes processed")
+                .baseUnit("bytes")
+                .tags(tags)
+                .register(meterRegistry)
+                .increment(timings.getBytes());
+        Counter.builder("ocr.images.pixels")
+                .description("Image pixels processed")
+                .baseUnit("pixels")
+                .tags(tags)
+                .register(meterRegistry)
+                .increment(timings.getPixels());
+        addServerTiming(timings.getStages());
+    }
+
+    private Timer timer(String stage, Tags tags) {
+        return Timer.builder("ocr.stage")
+                .description("Time spent in an OCR pipeline stage")
+                .tags(tags)
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    private Tags tags(String language, String format, long pixels) {
+        return Tags.of("language", language != null ? language : environment.getProperty("tesseract.data.language", ""),
+                "format", format,
+                "megapixels", megapixelBucket(pixels));
+    }
+
+    /**
+     * Bounded buckets keep the number of time series small
+     */
+    private static String megapixelBucket(long pixels) {
+        double megapixels = pixels / 1_000_000.0;
+        if (megapixels < 1) {
+            return "0-1";
+        } else if (megapixels < 4) {
+            return "1-4";
+        } else if (megapixels < 16) {
+            return "4-16";
+        } else if (megapixels < 64) {
+            return "16-64";
+        }
+        return "64+";
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addServerTiming(Map<String, Long> stages) {
+        if (!environment.getProperty("ocr.metrics.server-timing.enabled", Boolean.class, false)) {
+            return;
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null) {
+            return;
+        }
+        try {
+            Map<String, Long> total;
+            synchronized (this) {
+                total = (Map<String, Long>) request.getAttribute(SERVER_TIMING_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                if (total == null) {
+                    total = Collections.synchronizedMap(new LinkedHashMap<>());
+                    request.setAttribute(SERVER_TIMING_ATTRIBUTE, total, RequestAttributes.SCOPE_REQUEST);
+                }
+            }
+            Map<String, Long> requestTotal = total;
+            stages.forEach((stage, nanos) -> requestTotal.merge(stage, nanos, Long::sum));
+        } catch (IllegalStateException e) {
+            log.debug("Stage timings arrived after the request completed");
+        }
+    }
+
+    /**
+     * Format request timings as a Server-Timing header value, durations in milliseconds
+     * @param stages
+     * @return
+     */
+    static String serverTiming(Map<String, Long> stages) {
+        synchronized (stages) {
+            return stages.entrySet().stream()
+                    .map(stage -> String.format(Locale.ROOT, "%s;dur=%.1f", stage.getKey(), stage.getValue() / 1_000_000.0))
+                    .collect(Collectors.joining(", "));
+        }
+    }
+}
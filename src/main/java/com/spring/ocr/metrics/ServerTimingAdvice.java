@@ -0,0 +1,46 @@
+package com.spring.ocr.metrics;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Map;
+
+/**
+ * Adds the OCR stage durations of a request as a {@code Server-Timing} header
+ */
+@RestControllerAdvice
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    final Environment environment;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return environment.getProperty("ocr.metrics.server-timing.enabled", Boolean.class, false);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest) {
+            Object stages = ((ServletServerHttpRequest) request).getServletRequest().getAttribute(OcrMetrics.SERVER_TIMING_ATTRIBUTE);
+            if (stages instanceof Map && !((Map<String, Long>) stages).isEmpty()) {
+                response.getHeaders().add("Server-Timing", OcrMetrics.serverTiming((Map<String, Long>) stages));
+            }
+        }
+        return body;
+    }
+}
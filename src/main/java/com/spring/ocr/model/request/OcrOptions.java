@@ -0,0 +1,22 @@
+package com.spring.ocr.model.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OcrOptions {
+
+    @Schema(description = "Preprocessing profile, the configured default profile when empty", example = "noisy-scan")
+    String profile;
+
+    @Schema(description = "Also return the lines and words with their boxes and confidences, from the same recognition as the text", example = "true")
+    boolean layout;
+
+    @Schema(description = "Language of the text, several languages are joined with +, the configured language when empty", example = "eng+tur")
+    String language;
+}
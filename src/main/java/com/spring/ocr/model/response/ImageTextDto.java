@@ -1,15 +1,25 @@
 package com.spring.ocr.model.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class ImageTextDto {
 
     String fileName;
     String text;
+
+    @Schema(description = "Lines and words with their boxes and confidences, only when the layout was requested")
+    List<TextLineDto> lines;
+
+    String error;
 }
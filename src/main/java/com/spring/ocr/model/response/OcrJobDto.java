@@ -0,0 +1,24 @@
+package com.spring.ocr.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OcrJobDto {
+
+    String id;
+    String fileName;
+    OcrJobStatus status;
+    Instant submittedAt;
+    Instant completedAt;
+    Instant expiresAt;
+    String error;
+}
@@ -0,0 +1,8 @@
+package com.spring.ocr.model.response;
+
+public enum OcrJobStatus {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+}
@@ -0,0 +1,46 @@
+package com.spring.ocr.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.spring.ocr.engine.TextLine;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TextLineDto {
+
+    String text;
+
+    @Schema(description = "Left, top, width and height in pixels of the uploaded image", example = "[12, 40, 380, 24]")
+    int[] box;
+
+    @Schema(description = "Confidence of the engine from 0 to 100", example = "88")
+    int confidence;
+
+    List<TextWordDto> words;
+
+    /**
+     * Lines of a recognized layout, null when only the text was recognized
+     * @param lines
+     * @return
+     */
+    public static List<TextLineDto> of(List<TextLine> lines) {
+        if (lines == null) {
+            return null;
+        }
+        return lines.stream()
+                .map(line -> new TextLineDto(line.getText(),
+                        new int[]{line.getLeft(), line.getTop(), line.getWidth(), line.getHeight()},
+                        Math.round(line.getConfidence()),
+                        line.getWords().stream().map(TextWordDto::of).collect(Collectors.toList())))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,30 @@
+package com.spring.ocr.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.spring.ocr.engine.TextWord;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TextWordDto {
+
+    String text;
+
+    @Schema(description = "Left, top, width and height in pixels of the uploaded image", example = "[12, 40, 96, 22]")
+    int[] box;
+
+    @Schema(description = "Confidence of the engine from 0 to 100", example = "91")
+    int confidence;
+
+    public static TextWordDto of(TextWord word) {
+        return new TextWordDto(word.getText(),
+                new int[]{word.getLeft(), word.getTop(), word.getWidth(), word.getHeight()},
+                Math.round(word.getConfidence()));
+    }
+}
@@ -0,0 +1,61 @@
+package com.spring.ocr.preprocess;
+
+import com.spring.ocr.util.StageTimings;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.opencv.core.Mat;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A preprocessing profile compiled into its steps.
+ * Kernels and structuring elements are created once when the profile is compiled and shared by all requests,
+ * a pipeline is therefore safe to apply from several threads at once.
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PreprocessPipeline {
+
+    @Getter
+    String name;
+
+    /**
+     * The steps as configured, such as gray,gaussian-blur,remove-noise
+     */
+    @Getter
+    String spec;
+
+    List<Step> steps;
+
+    /**
+     * Run every step on the output of the previous one, each step is timed as its own stage
+     * @param image
+     * @return
+     */
+    public PreprocessedImage apply(PreprocessedImage image) {
+        for (Step step : steps) {
+            PreprocessedImage input = image;
+            image = StageTimings.time(step.getName(), () -> step.getOperation().apply(input));
+        }
+        return image;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    static class Step {
+
+        String name;
+        UnaryOperator<PreprocessedImage> operation;
+
+        /**
+         * A step that changes the pixels of the image but not where they are
+         */
+        static Step filter(String name, UnaryOperator<Mat> filter) {
+            return new Step(name, image -> image.filtered(filter.apply(image.getMat())));
+        }
+    }
+}
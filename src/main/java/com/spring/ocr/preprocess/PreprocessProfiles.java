@@ -0,0 +1,181 @@
+package com.spring.ocr.preprocess;
+
+import com.spring.ocr.error.UnknownProfileException;
+import com.spring.ocr.metrics.OcrMetrics;
+import com.spring.ocr.util.OpencvUtil;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * The preprocessing profiles of {@code ocr.preprocess.profiles}, compiled once at startup.
+ * A profile is a comma separated list of steps, a step may take a number after a colon:
+ * <pre>
+ * ocr.preprocess.profiles.noisy-scan=gray,gaussian-blur,remove-noise:1,otsu,remove-specks:2
+ * </pre>
+ * Steps: gray, blur, gaussian-blur, equalize-hist, binary, otsu, sobel, dilate:size, erode:size,
+ * remove-noise:neighbours, remove-specks:area, deskew:min-angle
+ * <p>
+ * The built-in auto profile picks one of the configured profiles for every image, see {@link TriagePipeline}.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PreprocessProfiles {
+
+    Map<String, PreprocessPipeline> pipelines = new TreeMap<>();
+    List<Mat> kernels = new ArrayList<>();
+    String defaultProfile;
+    double speckArea;
+    long deskewSamplePixels;
+    double deskewMinAngle;
+
+    public PreprocessProfiles(Environment environment, OcrMetrics ocrMetrics) {
+        this.defaultProfile = environment.getProperty("ocr.preprocess.default-profile", TriagePipeline.NAME);
+        this.speckArea = environment.getProperty("ocr.preprocess.speck-removal.area", Double.class, 1.0);
+        this.deskewSamplePixels = environment.getProperty("ocr.preprocess.deskew.sample-pixels", Long.class, 250_000L);
+        this.deskewMinAngle = environment.getProperty("ocr.preprocess.deskew.min-angle", Double.class, 0.3);
+        Binder.get(environment)
+                .bind("ocr.preprocess.profiles", Bindable.mapOf(String.class, String.class))
+                .orElse(Collections.emptyMap())
+                .forEach((name, spec) -> pipelines.put(name, compile(name, spec)));
+        if (pipelines.containsKey(TriagePipeline.NAME)) {
+            throw new IllegalStateException("Preprocessing profile " + TriagePipeline.NAME + " is built in and cannot be configured");
+        }
+        pipelines.put(TriagePipeline.NAME, new TriagePipeline(environment, this, ocrMetrics));
+        if (!pipelines.containsKey(defaultProfile)) {
+            throw new IllegalStateException("Default preprocessing profile " + defaultProfile + " is not defined in ocr.preprocess.profiles");
+        }
+        log.info("Preprocessing profiles {}, default {}", pipelines.keySet(), defaultProfile);
+    }
+
+    /**
+     * The pipeline of a profile
+     * @param name profile name, the default profile when empty
+     * @return
+     */
+    public PreprocessPipeline get(String name) {
+        PreprocessPipeline pipeline = pipelines.get(StringUtils.hasText(name) ? name : defaultProfile);
+        if (pipeline == null) {
+            throw new UnknownProfileException("Unknown preprocessing profile " + name + ", available profiles are " + pipelines.keySet());
+        }
+        return pipeline;
+    }
+
+    /**
+     * Smallest skew in degrees the deskew step corrects by default
+     * @return
+     */
+    public double getDeskewMinAngle() {
+        return deskewMinAngle;
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(pipelines.keySet());
+    }
+
+    private PreprocessPipeline compile(String name, String spec) {
+        List<PreprocessPipeline.Step> steps = new ArrayList<>();
+        for (String token : StringUtils.tokenizeToStringArray(spec, ",")) {
+            String[] parts = token.split(":", 2);
+            steps.add(step(name, parts[0].trim(), parts.length > 1 ? parts[1].trim() : null));
+        }
+        String normalized = Arrays.stream(StringUtils.tokenizeToStringArray(spec, ",")).collect(Collectors.joining(","));
+        return new PreprocessPipeline(name, normalized, Collections.unmodifiableList(steps));
+    }
+
+    private PreprocessPipeline.Step step(String profile, String step, String argument) {
+        switch (step) {
+            case "gray":
+                return PreprocessPipeline.Step.filter(step, OpencvUtil::gray);
+            case "blur":
+                return PreprocessPipeline.Step.filter(step, OpencvUtil::blur);
+            case "gaussian-blur":
+                return PreprocessPipeline.Step.filter(step, OpencvUtil::gaussianBlur);
+            case "equalize-hist":
+                return PreprocessPipeline.Step.filter(step, OpencvUtil::equalizeHist);
+            case "binary":
+                return PreprocessPipeline.Step.filter(step, OpencvUtil::binary);
+            case "otsu":
+                return PreprocessPipeline.Step.filter(step, OpencvUtil::otsu);
+            case "sobel":
+                return PreprocessPipeline.Step.filter(step, OpencvUtil::sobel);
+            case "dilate": {
+                Mat element = structuringElement(profile, step, argument);
+                return PreprocessPipeline.Step.filter(step, mat -> OpencvUtil.dilate(mat, element));
+            }
+            case "erode": {
+                Mat element = structuringElement(profile, step, argument);
+                return PreprocessPipeline.Step.filter(step, mat -> OpencvUtil.erode(mat, element));
+            }
+            case "remove-noise": {
+                int neighbours = (int) number(profile, step, argument, 1);
+                return PreprocessPipeline.Step.filter(step, mat -> OpencvUtil.navieRemoveNoise(mat, neighbours));
+            }
+            case "remove-specks": {
+                double area = number(profile, step, argument, speckArea);
+                return PreprocessPipeline.Step.filter(step, mat -> OpencvUtil.contoursRemoveNoise(mat, area));
+            }
+            case "deskew": {
+                double minAngle = number(profile, step, argument, deskewMinAngle);
+                return new PreprocessPipeline.Step(step, image -> deskew(image, minAngle));
+            }
+            default:
+                throw new IllegalStateException("Unknown step " + step + " in preprocessing profile " + profile);
+        }
+    }
+
+    /**
+     * Straighten the image, the rotation is added to its transform so boxes can be mapped back to the uploaded image.
+     * A skew already measured on the image, such as by the triage of the auto profile, is used instead of measuring it again.
+     */
+    private PreprocessedImage deskew(PreprocessedImage image, double minAngle) {
+        Mat mat = image.getMat();
+        double angle = image.getSkew() != null ? image.getSkew() : OpencvUtil.skewAngle(mat, deskewSamplePixels);
+        if (Math.abs(angle) < minAngle) {
+            return image;
+        }
+        return image.warped(OpencvUtil.rotate(mat, angle), OpencvUtil.rotation(mat, angle));
+    }
+
+    private Mat structuringElement(String profile, String step, String argument) {
+        int size = (int) number(profile, step, argument, 3);
+        Mat element = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(size, size));
+        kernels.add(element);
+        return element;
+    }
+
+    private static double number(String profile, String step, String argument, double defaultValue) {
+        if (argument == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(argument);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Step " + step + " in preprocessing profile " + profile + " expects a number but got " + argument);
+        }
+    }
+
+    @PreDestroy
+    public void releaseKernels() {
+        kernels.forEach(Mat::release);
+    }
+}
@@ -0,0 +1,84 @@
+package com.spring.ocr.preprocess;
+
+import com.spring.ocr.util.ImageTransform;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import org.opencv.core.Mat;
+
+/**
+ * An image on its way through preprocessing, together with the transform back to the image as it was uploaded
+ */
+@Value
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PreprocessedImage {
+
+    Mat mat;
+
+    /**
+     * Maps points of the mat to the uploaded image
+     */
+    ImageTransform transform;
+
+    /**
+     * Skew of the text lines in degrees as already measured on the mat, null when it has not been measured
+     */
+    Double skew;
+
+    /**
+     * An image at the size it was uploaded
+     * @param mat
+     * @return
+     */
+    public static PreprocessedImage of(Mat mat) {
+        return new PreprocessedImage(mat, ImageTransform.identity(), null);
+    }
+
+    /**
+     * An image decoded at a fraction of the size it was uploaded
+     * @param mat
+     * @param scale
+     * @return
+     */
+    public static PreprocessedImage of(Mat mat, double scale) {
+        return new PreprocessedImage(mat, ImageTransform.identity().scaled(scale), null);
+    }
+
+    /**
+     * The image after a step that changed its pixels but not where they are
+     * @param filtered
+     * @return
+     */
+    public PreprocessedImage filtered(Mat filtered) {
+        return filtered == mat ? this : new PreprocessedImage(filtered, transform, skew);
+    }
+
+    /**
+     * The image after it was scaled by the factor, scaling keeps the angle of the lines
+     * @param scaled
+     * @param scale
+     * @return
+     */
+    public PreprocessedImage scaled(Mat scaled, double scale) {
+        return new PreprocessedImage(scaled, transform.scaled(scale), skew);
+    }
+
+    /**
+     * The image after it was warped with the 2x3 affine matrix, a skew measured before no longer applies
+     * @param warped
+     * @param affine
+     * @return
+     */
+    public PreprocessedImage warped(Mat warped, double[] affine) {
+        return new PreprocessedImage(warped, transform.warped(affine), null);
+    }
+
+    /**
+     * The image with the skew measured on it, so the deskew step does not measure it again
+     * @param skew
+     * @return
+     */
+    public PreprocessedImage withSkew(double skew) {
+        return new PreprocessedImage(mat, transform, skew);
+    }
+}
@@ -0,0 +1,91 @@
+package com.spring.ocr.preprocess;
+
+import com.spring.ocr.metrics.OcrMetrics;
+import com.spring.ocr.util.ImageQuality;
+import com.spring.ocr.util.OpencvUtil;
+import com.spring.ocr.util.StageTimings;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+
+import java.util.Collections;
+import java.util.Locale;
+
+/**
+ * The auto profile, it measures the quality of every image and runs the lightest profile the image needs.
+ * Clean or blurred images get the clean profile, noisy or washed out images the noisy profile, anything else the standard profile.
+ * Skewed images never get the clean profile, which does not straighten them.
+ * The skew measured here is handed to the deskew step of the selected profile, so the angle search runs once per image.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+class TriagePipeline extends PreprocessPipeline {
+
+    static final String NAME = "auto";
+
+    PreprocessPipeline clean;
+    PreprocessPipeline standard;
+    PreprocessPipeline noisy;
+    long samplePixels;
+    double cleanNoise;
+    double noisyNoise;
+    double minContrast;
+    double minSharpness;
+    double maxCleanSkew;
+    OcrMetrics ocrMetrics;
+
+    TriagePipeline(Environment environment, PreprocessProfiles profiles, OcrMetrics ocrMetrics) {
+        this(profiles.get(environment.getProperty("ocr.preprocess.triage.clean-profile", "fast")),
+                profiles.get(environment.getProperty("ocr.preprocess.triage.standard-profile", "default")),
+                profiles.get(environment.getProperty("ocr.preprocess.triage.noisy-profile", "noisy-scan")),
+                environment.getProperty("ocr.preprocess.triage.sample-pixels", Long.class, 250_000L),
+                environment.getProperty("ocr.preprocess.triage.clean-noise", Double.class, 1.0),
+                environment.getProperty("ocr.preprocess.triage.noisy-noise", Double.class, 3.0),
+                environment.getProperty("ocr.preprocess.triage.min-contrast", Double.class, 64.0),
+                environment.getProperty("ocr.preprocess.triage.min-sharpness", Double.class, 0.01),
+                profiles.getDeskewMinAngle(),
+                ocrMetrics);
+    }
+
+    private TriagePipeline(PreprocessPipeline clean, PreprocessPipeline standard, PreprocessPipeline noisy, long samplePixels,
+                           double cleanNoise, double noisyNoise, double minContrast, double minSharpness, double maxCleanSkew, OcrMetrics ocrMetrics) {
+        // The spec is part of the result cache key, so it covers every setting that changes the outcome
+        super(NAME, String.format(Locale.ROOT, "%s(%s;%s;%s;%d;%s;%s;%s;%s;%s)", NAME, clean.getSpec(), standard.getSpec(), noisy.getSpec(),
+                samplePixels, cleanNoise, noisyNoise, minContrast, minSharpness, maxCleanSkew), Collections.emptyList());
+        this.clean = clean;
+        this.standard = standard;
+        this.noisy = noisy;
+        this.samplePixels = samplePixels;
+        this.cleanNoise = cleanNoise;
+        this.noisyNoise = noisyNoise;
+        this.minContrast = minContrast;
+        this.minSharpness = minSharpness;
+        this.maxCleanSkew = maxCleanSkew;
+        this.ocrMetrics = ocrMetrics;
+    }
+
+    @Override
+    public PreprocessedImage apply(PreprocessedImage image) {
+        ImageQuality quality = StageTimings.time("triage", () -> OpencvUtil.imageQuality(OpencvUtil.gray(image.getMat()), samplePixels));
+        PreprocessPipeline pipeline = select(quality);
+        log.debug("Preprocessing with profile {} for {}", pipeline.getName(), quality);
+        ocrMetrics.triaged(pipeline.getName(), quality);
+        // The deskew step of the selected profile reuses the measured skew
+        return pipeline.apply(image.withSkew(quality.getSkew()));
+    }
+
+    private PreprocessPipeline select(ImageQuality quality) {
+        if (quality.getNoise() >= noisyNoise || quality.getContrast() < minContrast) {
+            return noisy;
+        }
+        if (Math.abs(quality.getSkew()) >= maxCleanSkew) {
+            return standard;
+        }
+        // Blurring an image that is already blurred only loses strokes
+        if (quality.getNoise() < cleanNoise || quality.getSharpness() < minSharpness) {
+            return clean;
+        }
+        return standard;
+    }
+}
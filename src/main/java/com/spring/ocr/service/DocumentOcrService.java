@@ -0,0 +1,16 @@
+package com.spring.ocr.service;
+
+import com.spring.ocr.document.DocumentPages;
+import com.spring.ocr.model.request.OcrOptions;
+import com.spring.ocr.model.response.PageTextDto;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+public interface DocumentOcrService {
+
+    DocumentPages openDocument(MultipartFile file) throws IOException;
+
+    void extractTextFromPages(String fileName, DocumentPages pages, OcrOptions options, Consumer<PageTextDto> consumer);
+}
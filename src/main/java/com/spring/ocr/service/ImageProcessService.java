@@ -1,10 +1,25 @@
 package com.spring.ocr.service;
 
-import java.awt.image.BufferedImage;
+import com.spring.ocr.preprocess.PreprocessPipeline;
+import com.spring.ocr.preprocess.PreprocessedImage;
+import org.opencv.core.Mat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 public interface ImageProcessService {
 
-    BufferedImage preprocessImage(byte[] image);
+    ByteBuffer readImage(InputStream in, long size) throws IOException;
+
+    /**
+     * Decode and preprocess an image, its transform maps the preprocessed image back to the uploaded one
+     * @param image
+     * @param pipeline
+     * @return
+     */
+    PreprocessedImage preprocessImage(ByteBuffer image, PreprocessPipeline pipeline);
 
+    PreprocessedImage preprocessImage(Mat image, PreprocessPipeline pipeline);
 
 }
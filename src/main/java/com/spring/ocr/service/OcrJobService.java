@@ -0,0 +1,17 @@
+package com.spring.ocr.service;
+
+import com.spring.ocr.model.request.OcrOptions;
+import com.spring.ocr.model.response.ImageTextDto;
+import com.spring.ocr.model.response.OcrJobDto;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+public interface OcrJobService {
+
+    OcrJobDto submit(MultipartFile file, OcrOptions options) throws IOException;
+
+    OcrJobDto getJob(String id);
+
+    ImageTextDto getResult(String id);
+}
@@ -1,11 +1,39 @@
 package com.spring.ocr.service;
 
+import com.spring.ocr.model.request.OcrOptions;
 import com.spring.ocr.model.response.ImageTextDto;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface OcrService {
 
-    ImageTextDto extractTextFromImage(MultipartFile file) throws IOException;
+    CompletableFuture<ImageTextDto> extractTextFromImage(MultipartFile file, OcrOptions options);
+
+    CompletableFuture<ImageTextDto> extractTextFromImage(String fileName, InputStream body, long size, OcrOptions options);
+
+    /**
+     * Recognize an image of work that was queued already, such as a job
+     * It waits for admission as long as it takes instead of being rejected and is recognized by an OCR worker,
+     * the calling thread blocks until the text is available.
+     * @param fileName
+     * @param image
+     * @param options
+     * @return
+     */
+    ImageTextDto extractTextFromImage(String fileName, ByteBuffer image, OcrOptions options);
+
+    /**
+     * Wait for admission off the calling thread and recognize an image that has already been read
+     * @param fileName
+     * @param image
+     * @param options
+     * @return
+     */
+    CompletableFuture<ImageTextDto> submitImage(String fileName, ByteBuffer image, OcrOptions options);
+
+    CompletableFuture<List<ImageTextDto>> extractTextFromImages(List<MultipartFile> files, OcrOptions options);
 }
@@ -0,0 +1,206 @@
+package com.spring.ocr.service.impl;
+
+import com.spring.ocr.admission.PixelAdmission;
+import com.spring.ocr.document.DocumentFormat;
+import com.spring.ocr.document.DocumentPages;
+import com.spring.ocr.document.ImageDocumentPages;
+import com.spring.ocr.document.PdfDocumentPages;
+import com.spring.ocr.engine.RecognizedText;
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.engine.TextRecognizer;
+import com.spring.ocr.error.UnsupportedImageException;
+import com.spring.ocr.metrics.OcrMetrics;
+import com.spring.ocr.model.request.OcrOptions;
+import com.spring.ocr.model.response.PageTextDto;
+import com.spring.ocr.model.response.TextLineDto;
+import com.spring.ocr.preprocess.PreprocessPipeline;
+import com.spring.ocr.preprocess.PreprocessProfiles;
+import com.spring.ocr.preprocess.PreprocessedImage;
+import com.spring.ocr.service.DocumentOcrService;
+import com.spring.ocr.service.ImageProcessService;
+import com.spring.ocr.util.MatScope;
+import com.spring.ocr.util.OpencvUtil;
+import com.spring.ocr.util.StageTimings;
+import com.spring.ocr.validator.ImageLimits;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DocumentOcrServiceImpl implements DocumentOcrService {
+
+    final TesseractEnginePool tesseractEnginePool;
+    final TextRecognizer textRecognizer;
+    final ImageProcessService imageProcessService;
+    final PreprocessProfiles preprocessProfiles;
+    final OcrMetrics ocrMetrics;
+    final ImageLimits imageLimits;
+    final PixelAdmission pixelAdmission;
+    final ThreadPoolTaskExecutor ocrTaskExecutor;
+    final Environment environment;
+
+    @Override
+    public DocumentPages openDocument(MultipartFile file) throws IOException {
+        // The upload is moved to a file owned by the document, multipart files are deleted when the request ends
+        Path path = Files.createTempFile("ocr-document-", null);
+        try {
+            file.transferTo(path);
+            DocumentFormat format;
+            try (InputStream in = Files.newInputStream(path)) {
+                format = DocumentFormat.read(in);
+            }
+            if (format == null) {
+                throw new UnsupportedImageException("Unsupported document format, expected PDF, TIFF, PNG or JPEG");
+            }
+            // The format is taken from the content, the content type sent by the client is not trusted
+            DocumentPages pages = format == DocumentFormat.PDF
+                    ? new PdfDocumentPages(path.toFile(), environment.getProperty("ocr.documents.dpi", Integer.class, 300), imageLimits)
+                    : new ImageDocumentPages(path.toFile(), imageLimits);
+            return new TempFileDocumentPages(pages, path);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    /**
+     * Pages are rendered one after the other on the calling thread and recognized in parallel on the OCR executor.
+     * Every rendered page waits for admission by its pixels before it is handed over, the calling thread waits with it.
+     * At most {@code ocr.documents.pages-in-flight} pages are rendered but not yet consumed,
+     * results are handed to the consumer in page order as soon as they are available.
+     */
+    @Override
+    public void extractTextFromPages(String fileName, DocumentPages pages, OcrOptions options, Consumer<PageTextDto> consumer) {
+        PreprocessPipeline pipeline = preprocessProfiles.get(options.getProfile());
+        String language = tesseractEnginePool.language(options.getLanguage());
+        int pageCount = pages.getPageCount();
+        int pagesInFlight = environment.getProperty("ocr.documents.pages-in-flight", Integer.class,
+                2 * tesseractEnginePool.getSize());
+        Deque<CompletableFuture<PageTextDto>> inFlight = new ArrayDeque<>();
+        try {
+            for (int page = 0; page < pageCount; page++) {
+                while (!inFlight.isEmpty() && (inFlight.size() >= pagesInFlight || inFlight.peek().isDone())) {
+                    consumer.accept(inFlight.poll().join());
+                }
+                inFlight.add(recognizePage(fileName, pages, page, pageCount, pipeline, language, options.isLayout()));
+            }
+            while (!inFlight.isEmpty()) {
+                consumer.accept(inFlight.poll().join());
+            }
+        } finally {
+            // Pages that have not started yet are skipped when the consumer fails, e.g. the client went away
+            inFlight.forEach(result -> result.cancel(false));
+        }
+    }
+
+    private CompletableFuture<PageTextDto> recognizePage(String fileName, DocumentPages pages, int page, int pageCount,
+                                                         PreprocessPipeline pipeline, String language, boolean layout) {
+        PageTextDto result = PageTextDto.builder()
+                .fileName(fileName)
+                .page(page + 1)
+                .pageCount(pageCount)
+                .build();
+        try {
+            long start = System.nanoTime();
+            BufferedImage image = pages.readPage(page);
+            String format = pages.getFormat();
+            long pixels = (long) image.getWidth() * image.getHeight();
+            ocrMetrics.record("render", format, pixels, System.nanoTime() - start);
+            // The document was accepted already, its pages are not rejected but wait until capacity is free
+            PixelAdmission.Permit permit = pixelAdmission.await(pixels);
+            CompletableFuture<RecognizedText> recognized;
+            try {
+                recognized = CompletableFuture.supplyAsync(() -> recognize(image, format, pipeline, language, layout), ocrTaskExecutor);
+            } catch (RuntimeException e) {
+                permit.close();
+                throw e;
+            }
+            return recognized
+                    .whenComplete((text, e) -> permit.close())
+                    .thenApply(text -> {
+                        result.setText(text.getText());
+                        result.setLines(TextLineDto.of(text.getLines()));
+                        return result;
+                    })
+                    .exceptionally(e -> failed(result, e));
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.completedFuture(failed(result, e));
+        }
+    }
+
+    private RecognizedText recognize(BufferedImage image, String format, PreprocessPipeline pipeline, String language, boolean layout) {
+        try (StageTimings timings = ocrMetrics.open(); MatScope scope = MatScope.open()) {
+            StageTimings.format(format);
+            StageTimings.language(language);
+            StageTimings.pixels((long) image.getWidth() * image.getHeight());
+            Mat mat = StageTimings.time("convert", () -> OpencvUtil.bufImgToMat(image, BufferedImage.TYPE_BYTE_GRAY, CvType.CV_8UC1));
+            PreprocessedImage preprocessed = imageProcessService.preprocessImage(mat, pipeline);
+            // The boxes are found in the preprocessed page but reported in the rendered one
+            return layout ? textRecognizer.recognizeLayout(preprocessed.getMat(), language).map(preprocessed.getTransform())
+                    : new RecognizedText(textRecognizer.recognize(preprocessed.getMat(), language), null);
+        }
+    }
+
+    private PageTextDto failed(PageTextDto result, Throwable e) {
+        Throwable cause = e.getCause() != null && !(e instanceof TaskRejectedException) ? e.getCause() : e;
+        log.error("Text could not be extracted from page " + result.getPage() + " of " + result.getFileName() + ": " + cause.getMessage());
+        result.setError(cause.getMessage());
+        return result;
+    }
+
+    /**
+     * Deletes the uploaded file together with the document
+     */
+    @RequiredArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class TempFileDocumentPages implements DocumentPages {
+
+        DocumentPages pages;
+        Path path;
+
+        @Override
+        public int getPageCount() {
+            return pages.getPageCount();
+        }
+
+        @Override
+        public String getFormat() {
+            return pages.getFormat();
+        }
+
+        @Override
+        public BufferedImage readPage(int index) throws IOException {
+            return pages.readPage(index);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                pages.close();
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
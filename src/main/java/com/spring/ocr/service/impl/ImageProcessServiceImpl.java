@@ -1,16 +1,27 @@
 package com.spring.ocr.service.impl;
 
+import com.spring.ocr.preprocess.PreprocessPipeline;
+import com.spring.ocr.preprocess.PreprocessedImage;
 import com.spring.ocr.service.ImageProcessService;
-import com.spring.ocr.util.OcrUtil;
+import com.spring.ocr.util.BufferUtil;
+import com.spring.ocr.util.ImageHeader;
 import com.spring.ocr.util.OpencvUtil;
+import com.spring.ocr.util.StageTimings;
+import com.spring.ocr.validator.ImageLimits;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
-import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
 
 @Service
 @Slf4j
@@ -18,13 +29,107 @@ import java.awt.image.BufferedImage;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class ImageProcessServiceImpl implements ImageProcessService {
 
+    final ImageLimits imageLimits;
+    final Environment environment;
+
+    @Override
+    public ByteBuffer readImage(InputStream in, long size) throws IOException {
+        return BufferUtil.readDirect(in, size,
+                environment.getProperty("ocr.upload.max-size", DataSize.class, DataSize.ofMegabytes(200)).toBytes());
+    }
+
     @Override
-    public BufferedImage preprocessImage(byte[] image) {
+    public PreprocessedImage preprocessImage(ByteBuffer image, PreprocessPipeline pipeline) {
+        return pipeline.apply(decode(image));
+    }
+
+    @Override
+    public PreprocessedImage preprocessImage(Mat image, PreprocessPipeline pipeline) {
+        PreprocessedImage gray = PreprocessedImage.of(StageTimings.time("gray", () -> OpencvUtil.gray(image)));
+        return pipeline.apply(resolutionEnabled() ? normalizeResolution(gray) : gray);
+    }
+
+    /**
+     * Decode as gray at a resolution that brings the text close to {@code ocr.resolution.target-text-height}
+     * JPEG can be decoded at 1/2, 1/4 and 1/8 scale for a fraction of the cost, so the text is measured on such a preview
+     * and the image is decoded at the smallest scale that still keeps the text at the target height.
+     * The transform of the result records the scale, so boxes can be reported in the uploaded image.
+     */
+    private PreprocessedImage decode(ByteBuffer image) {
+        ImageHeader header = imageLimits.check(image);
+        StageTimings.format(header.getFormat().name().toLowerCase(Locale.ROOT));
+        StageTimings.pixels(header.getPixels());
+        if (!resolutionEnabled()) {
+            return PreprocessedImage.of(decode(image, Imgcodecs.IMREAD_GRAYSCALE));
+        }
+        if (header.getFormat() != ImageHeader.Format.JPEG) {
+            return normalizeResolution(PreprocessedImage.of(decode(image, Imgcodecs.IMREAD_GRAYSCALE)));
+        }
+
+        long samplePixels = samplePixels();
+        int previewFactor = 1;
+        while (previewFactor < 8 && header.getPixels() / ((long) previewFactor * previewFactor) > samplePixels) {
+            previewFactor *= 2;
+        }
+        Mat preview = decode(image, grayscaleMode(previewFactor));
+        double textHeight = StageTimings.time("resolution", () -> OpencvUtil.textHeight(preview, samplePixels));
+        if (textHeight < 0) {
+            // No text could be measured, it may be too small for the preview
+            if (previewFactor == 1) {
+                return PreprocessedImage.of(preview);
+            }
+            preview.release();
+            return PreprocessedImage.of(decode(image, Imgcodecs.IMREAD_GRAYSCALE));
+        }
+        double fullTextHeight = textHeight * previewFactor;
+        log.debug("Measured text height {} in {}x{} JPEG", fullTextHeight, header.getWidth(), header.getHeight());
+
+        int factor = 1;
+        while (factor < 8 && fullTextHeight / (factor * 2) >= targetTextHeight()) {
+            factor *= 2;
+        }
+        if (factor == previewFactor) {
+            return scaleToTextHeight(PreprocessedImage.of(preview, 1.0 / factor), fullTextHeight / factor);
+        }
+        preview.release();
+        return scaleToTextHeight(PreprocessedImage.of(decode(image, grayscaleMode(factor)), 1.0 / factor), fullTextHeight / factor);
+    }
+
+    private Mat decode(ByteBuffer image, int mode) {
+        return StageTimings.time("decode", () -> OpencvUtil.byteBufferToMat(image, mode));
+    }
 
-        Mat img = OpencvUtil.byteArrayToMat(image);
+    private PreprocessedImage normalizeResolution(PreprocessedImage gray) {
+        double textHeight = StageTimings.time("resolution", () -> OpencvUtil.textHeight(gray.getMat(), samplePixels()));
+        return textHeight < 0 ? gray : scaleToTextHeight(gray, textHeight);
+    }
+
+    /**
+     * Shrink the image when its text is noticeably taller than the target, it is never enlarged
+     */
+    private PreprocessedImage scaleToTextHeight(PreprocessedImage gray, double textHeight) {
+        double scale = targetTextHeight() / textHeight;
+        return scale < 0.8 ? gray.scaled(StageTimings.time("resolution", () -> OpencvUtil.resize(gray.getMat(), scale)), scale) : gray;
+    }
 
-        Mat preprocessMat = OcrUtil.preprocess(img);
+    private static int grayscaleMode(int factor) {
+        switch (factor) {
+            case 2: return Imgcodecs.IMREAD_REDUCED_GRAYSCALE_2;
+            case 4: return Imgcodecs.IMREAD_REDUCED_GRAYSCALE_4;
+            case 8: return Imgcodecs.IMREAD_REDUCED_GRAYSCALE_8;
+            default: return Imgcodecs.IMREAD_GRAYSCALE;
+        }
+    }
+
+    private boolean resolutionEnabled() {
+        return environment.getProperty("ocr.resolution.enabled", Boolean.class, true);
+    }
+
+    private double targetTextHeight() {
+        return environment.getProperty("ocr.resolution.target-text-height", Double.class, 32.0);
+    }
 
-        return OpencvUtil.matToBufImg(preprocessMat,".jpg");
+    private long samplePixels() {
+        return environment.getProperty("ocr.resolution.sample-pixels", Long.class, 4_000_000L);
     }
 }
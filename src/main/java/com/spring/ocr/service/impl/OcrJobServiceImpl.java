@@ -0,0 +1,178 @@
+package com.spring.ocr.service.impl;
+
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.error.JobNotFinishedException;
+import com.spring.ocr.error.JobNotFoundException;
+import com.spring.ocr.error.TooManyRequestsException;
+import com.spring.ocr.model.request.OcrOptions;
+import com.spring.ocr.model.response.ImageTextDto;
+import com.spring.ocr.model.response.OcrJobDto;
+import com.spring.ocr.model.response.OcrJobStatus;
+import com.spring.ocr.preprocess.PreprocessProfiles;
+import com.spring.ocr.service.ImageProcessService;
+import com.spring.ocr.service.OcrJobService;
+import com.spring.ocr.service.OcrService;
+import com.spring.ocr.validator.ImageLimits;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OcrJobServiceImpl implements OcrJobService {
+
+    final OcrService ocrService;
+    final ImageProcessService imageProcessService;
+    final PreprocessProfiles preprocessProfiles;
+    final TesseractEnginePool tesseractEnginePool;
+    final ImageLimits imageLimits;
+    final ThreadPoolTaskExecutor ocrJobExecutor;
+    final Environment environment;
+
+    final Map<String, OcrJobDto> jobs = new ConcurrentHashMap<>();
+    final Map<String, ImageTextDto> results = new ConcurrentHashMap<>();
+    // Exponentially weighted mean job duration, used to estimate Retry-After
+    final AtomicLong meanJobMillis = new AtomicLong(1000);
+    // Native memory held by the images of queued and running jobs
+    final AtomicLong queuedBytes = new AtomicLong();
+
+    @Override
+    public OcrJobDto submit(MultipartFile file, OcrOptions options) throws IOException {
+        // An unknown profile or language is rejected when the job is submitted, not when it runs
+        preprocessProfiles.get(options.getProfile());
+        tesseractEnginePool.language(options.getLanguage());
+        // The upload is gone once the request ends, so it is read before queueing
+        ByteBuffer image;
+        try (InputStream in = file.getInputStream()) {
+            image = imageProcessService.readImage(in, file.getSize());
+        }
+        imageLimits.check(image);
+        reserve(image.capacity());
+        OcrJobDto job = OcrJobDto.builder()
+                .id(UUID.randomUUID().toString())
+                .fileName(file.getOriginalFilename())
+                .status(OcrJobStatus.QUEUED)
+                .submittedAt(Instant.now())
+                .build();
+        jobs.put(job.getId(), job);
+        try {
+            ocrJobExecutor.execute(() -> run(job, image, options));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.getId());
+            queuedBytes.addAndGet(-image.capacity());
+            throw new TooManyRequestsException("OCR job queue is full", retryAfter());
+        }
+        return job;
+    }
+
+    @Override
+    public OcrJobDto getJob(String id) {
+        OcrJobDto job = jobs.get(id);
+        if (job == null) {
+            throw new JobNotFoundException("OCR job " + id + " does not exist or has expired");
+        }
+        return job;
+    }
+
+    @Override
+    public ImageTextDto getResult(String id) {
+        OcrJobDto job = getJob(id);
+        if (job.getStatus() == OcrJobStatus.FAILED) {
+            return ImageTextDto.builder()
+                    .fileName(job.getFileName())
+                    .error(job.getError())
+                    .build();
+        }
+        ImageTextDto result = results.get(id);
+        if (result == null) {
+            throw new JobNotFinishedException("OCR job " + id + " is " + job.getStatus());
+        }
+        return result;
+    }
+
+    /**
+     * Remove finished jobs whose results have outlived their time to live
+     */
+    @Scheduled(fixedDelayString = "${ocr.jobs.purge-interval:PT1M}")
+    public void purgeExpiredJobs() {
+        Instant now = Instant.now();
+        jobs.values().removeIf(job -> job.getExpiresAt() != null && job.getExpiresAt().isBefore(now));
+        results.keySet().retainAll(jobs.keySet());
+    }
+
+    private void run(OcrJobDto job, ByteBuffer image, OcrOptions options) {
+        jobs.put(job.getId(), job.toBuilder().status(OcrJobStatus.RUNNING).build());
+        long start = System.nanoTime();
+        try {
+            ImageTextDto result;
+            try {
+                result = ocrService.extractTextFromImage(job.getFileName(), image, options);
+            } finally {
+                // The image no longer counts against the queue once recognized, before the job is reported finished
+                queuedBytes.addAndGet(-image.capacity());
+            }
+            results.put(job.getId(), result);
+            complete(job, OcrJobStatus.DONE, null);
+        } catch (RuntimeException | LinkageError e) {
+            log.error("OCR job " + job.getId() + " failed: " + e.getMessage());
+            complete(job, OcrJobStatus.FAILED, e.getMessage());
+        } finally {
+            long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            meanJobMillis.updateAndGet(mean -> mean + (millis - mean) / 8);
+        }
+    }
+
+    private void complete(OcrJobDto job, OcrJobStatus status, String error) {
+        Instant now = Instant.now();
+        jobs.put(job.getId(), job.toBuilder()
+                .status(status)
+                .error(error)
+                .completedAt(now)
+                .expiresAt(now.plus(environment.getProperty("ocr.jobs.result-ttl", Duration.class, Duration.ofMinutes(10))))
+                .build());
+    }
+
+    /**
+     * Count the image against the bytes jobs may hold, a single image larger than the limit is still accepted when no other job holds any
+     * @param bytes
+     * @throws TooManyRequestsException when the images of the queued jobs would exceed the limit
+     */
+    private void reserve(long bytes) {
+        long maxBytes = environment.getProperty("ocr.jobs.queue-max-bytes", DataSize.class, DataSize.ofMegabytes(512)).toBytes();
+        long queued = queuedBytes.getAndAdd(bytes);
+        if (queued > 0 && queued + bytes > maxBytes) {
+            queuedBytes.addAndGet(-bytes);
+            throw new TooManyRequestsException("OCR job queue holds too many images", retryAfter());
+        }
+    }
+
+    /**
+     * Time until the jobs already queued should have been picked up
+     * @return
+     */
+    private Duration retryAfter() {
+        int queued = ocrJobExecutor.getThreadPoolExecutor().getQueue().size();
+        long millis = queued * meanJobMillis.get() / Math.max(1, ocrJobExecutor.getMaxPoolSize());
+        return Duration.ofSeconds(Math.max(1, (millis + 999) / 1000));
+    }
+}
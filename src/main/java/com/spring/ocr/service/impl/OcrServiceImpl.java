@@ -1,19 +1,42 @@
 package com.spring.ocr.service.impl;
 
+import com.spring.ocr.admission.PixelAdmission;
+import com.spring.ocr.cache.OcrResultCache;
+import com.spring.ocr.engine.RecognizedText;
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.engine.TextRecognizer;
+import com.spring.ocr.error.BatchSizeExceededException;
+import com.spring.ocr.metrics.OcrMetrics;
+import com.spring.ocr.model.request.OcrOptions;
 import com.spring.ocr.model.response.ImageTextDto;
+import com.spring.ocr.model.response.TextLineDto;
+import com.spring.ocr.preprocess.PreprocessPipeline;
+import com.spring.ocr.preprocess.PreprocessProfiles;
+import com.spring.ocr.preprocess.PreprocessedImage;
 import com.spring.ocr.service.ImageProcessService;
 import com.spring.ocr.service.OcrService;
+import com.spring.ocr.util.MatScope;
+import com.spring.ocr.util.StageTimings;
+import com.spring.ocr.validator.ImageLimits;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
-import net.sourceforge.tess4j.Tesseract;
-import net.sourceforge.tess4j.TesseractException;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -21,27 +44,188 @@ import java.io.IOException;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class OcrServiceImpl implements OcrService {
 
-    final Tesseract tesseract;
+    final TextRecognizer textRecognizer;
+    final OcrResultCache ocrResultCache;
     final ImageProcessService imageProcessService;
+    final PreprocessProfiles preprocessProfiles;
+    final TesseractEnginePool tesseractEnginePool;
+    final PixelAdmission pixelAdmission;
+    final ImageLimits imageLimits;
+    final OcrMetrics ocrMetrics;
+    final ThreadPoolTaskExecutor ocrTaskExecutor;
+    final AsyncTaskExecutor ocrIoExecutor;
+    final Environment environment;
 
     @Override
-    public ImageTextDto extractTextFromImage(MultipartFile file) throws IOException {
+    public CompletableFuture<ImageTextDto> extractTextFromImage(MultipartFile file, OcrOptions options) {
+        return extractTextFromImage(file.getOriginalFilename(), file, file.getSize(), options);
+    }
+
+    @Override
+    public CompletableFuture<ImageTextDto> extractTextFromImage(String fileName, InputStream body, long size, OcrOptions options) {
+        return extractTextFromImage(fileName, () -> body, size, options);
+    }
+
+    @Override
+    public CompletableFuture<List<ImageTextDto>> extractTextFromImages(List<MultipartFile> files, OcrOptions options) {
+        int maxSize = environment.getProperty("ocr.batch.max-size", Integer.class, 20);
+        if (files.size() > maxSize) {
+            throw new BatchSizeExceededException("At most " + maxSize + " images can be extracted in one batch");
+        }
+        validate(options);
+        List<CompletableFuture<ImageTextDto>> results = files.stream()
+                .map(file -> extractTextFromImage(file.getOriginalFilename(), file, file.getSize(), options)
+                        .exceptionally(e -> failed(file.getOriginalFilename(), e)))
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+                .thenApply(done -> results.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * The upload is read and waits for admission on the I/O executor, only admitted images take an OCR worker
+     */
+    private CompletableFuture<ImageTextDto> extractTextFromImage(String fileName, InputStreamSource upload, long size, OcrOptions options) {
+        validate(options);
+        return CompletableFuture
+                .supplyAsync(() -> read(upload, size), ocrIoExecutor)
+                .thenCompose(image -> recognizeAdmitted(fileName, image, options));
+    }
+
+    @Override
+    public CompletableFuture<ImageTextDto> submitImage(String fileName, ByteBuffer image, OcrOptions options) {
+        validate(options);
+        return CompletableFuture
+                .supplyAsync(() -> image, ocrIoExecutor)
+                .thenCompose(read -> recognizeAdmitted(fileName, read, options));
+    }
+
+    /**
+     * Unknown profiles and languages are rejected before the upload is read
+     */
+    private void validate(OcrOptions options) {
+        preprocessProfiles.get(options.getProfile());
+        tesseractEnginePool.language(options.getLanguage());
+    }
+
+    private ByteBuffer read(InputStreamSource upload, long size) {
+        long start = System.nanoTime();
+        try (InputStream in = upload.getInputStream()) {
+            ByteBuffer image = imageProcessService.readImage(in, size);
+            ocrMetrics.read(image, System.nanoTime() - start);
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Cached results are answered on the I/O thread, only images that have to be recognized wait for admission and an OCR worker
+     */
+    private CompletableFuture<ImageTextDto> recognizeAdmitted(String fileName, ByteBuffer image, OcrOptions options) {
+        // Bogus and oversized images are rejected from their header before they are hashed or wait for admission
+        long pixels = imageLimits.check(image).getPixels();
+        PreprocessPipeline pipeline = preprocessProfiles.get(options.getProfile());
+        String language = tesseractEnginePool.language(options.getLanguage());
+        String key = ocrResultCache.key(image, engineConfig(pipeline, language, options.isLayout()));
+        RecognizedText cached = ocrResultCache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(imageText(fileName, cached));
+        }
+        // The full size is the peak a decode can reach, see PixelAdmission for why reduced JPEG decoding is not taken into account
+        PixelAdmission.Permit permit = pixelAdmission.admit(pixels);
         try {
+            return CompletableFuture
+                    .supplyAsync(() -> extractTextFromImage(fileName, image, pipeline, language, options.isLayout(), key), ocrTaskExecutor)
+                    .whenComplete((result, e) -> permit.close());
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
 
-            BufferedImage bufferedImage = imageProcessService.preprocessImage(file.getBytes());
-            String text = tesseract.doOCR(bufferedImage);
-            return ImageTextDto.builder()
-                    .fileName(file.getOriginalFilename())
-                    .text(text)
-                    .build();
+    @Override
+    public ImageTextDto extractTextFromImage(String fileName, ByteBuffer image, OcrOptions options) {
+        long pixels = imageLimits.check(image).getPixels();
+        PreprocessPipeline pipeline = preprocessProfiles.get(options.getProfile());
+        String language = tesseractEnginePool.language(options.getLanguage());
+        String key = ocrResultCache.key(image, engineConfig(pipeline, language, options.isLayout()));
+        RecognizedText cached = ocrResultCache.getIfPresent(key);
+        if (cached != null) {
+            return imageText(fileName, cached);
+        }
+        // Only the OCR workers use engines, so queued work cannot take more of them than the endpoints leave free
+        try (PixelAdmission.Permit permit = pixelAdmission.await(pixels)) {
+            return CompletableFuture
+                    .supplyAsync(() -> extractTextFromImage(fileName, image, pipeline, language, options.isLayout(), key), ocrTaskExecutor)
+                    .join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
 
-        } catch (TesseractException e) {
-            log.error("Tesseract error: " + e.getMessage());
-            return ImageTextDto.builder()
-                    .fileName(file.getOriginalFilename())
-                    .text("")
-                    .build();
+    /**
+     * Recognize an image that was not found in the cache and cache the result
+     */
+    private ImageTextDto extractTextFromImage(String fileName, ByteBuffer image, PreprocessPipeline pipeline, String language,
+                                              boolean layout, String key) {
+        try (StageTimings timings = ocrMetrics.open()) {
+            StageTimings.bytes(image.remaining());
+            StageTimings.language(language);
+            RecognizedText result = recognize(image, pipeline, language, layout);
+            ocrResultCache.put(key, result);
+            return imageText(fileName, result);
         }
     }
 
+    private static ImageTextDto imageText(String fileName, RecognizedText result) {
+        return ImageTextDto.builder()
+                .fileName(fileName)
+                .text(result.getText())
+                .lines(TextLineDto.of(result.getLines()))
+                .build();
+    }
+
+    private RecognizedText recognize(ByteBuffer image, PreprocessPipeline pipeline, String language, boolean layout) {
+        try (MatScope scope = MatScope.open()) {
+            PreprocessedImage preprocessed = imageProcessService.preprocessImage(image, pipeline);
+            // The boxes are found in the preprocessed image but reported in the uploaded one
+            return layout ? textRecognizer.recognizeLayout(preprocessed.getMat(), language).map(preprocessed.getTransform())
+                    : new RecognizedText(textRecognizer.recognize(preprocessed.getMat(), language), null);
+        }
+    }
+
+    /**
+     * The settings that change the recognized text of an image
+     * @param pipeline
+     * @param language
+     * @param layout
+     * @return
+     */
+    private String engineConfig(PreprocessPipeline pipeline, String language, boolean layout) {
+        return String.join("|",
+                String.valueOf(layout),
+                language,
+                environment.getProperty("tesseract.data.dpi"),
+                pipeline.getSpec(),
+                environment.getProperty("ocr.preprocess.speck-removal.area"),
+                environment.getProperty("ocr.resolution.enabled"),
+                environment.getProperty("ocr.resolution.target-text-height"),
+                environment.getProperty("ocr.resolution.sample-pixels"),
+                environment.getProperty("ocr.tiling.enabled"),
+                environment.getProperty("ocr.tiling.min-pixels"),
+                environment.getProperty("ocr.tiling.tile-pixels"),
+                environment.getProperty("ocr.tiling.overlap"));
+    }
+
+    private ImageTextDto failed(String fileName, Throwable e) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        log.error("Text could not be extracted from " + fileName + ": " + cause.getMessage());
+        return ImageTextDto.builder()
+                .fileName(fileName)
+                .error(cause.getMessage())
+                .build();
+    }
+
 }
@@ -0,0 +1,98 @@
+package com.spring.ocr.util;
+
+import com.spring.ocr.error.PayloadTooLargeException;
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+@UtilityClass
+public class BufferUtil {
+
+    static final int INITIAL_CAPACITY = 64 * 1024;
+    // The announced size is not trusted beyond this, larger buffers only grow as the bytes really arrive
+    static final int MAX_INITIAL_CAPACITY = 1024 * 1024;
+
+    /**
+     * Read a stream into a single direct buffer outside of the Java heap
+     *
+     * @param in
+     *            Stream to be read, it is not closed
+     * @param size
+     *            Number of bytes the stream holds, or -1 when unknown
+     * @param maxSize
+     *            Largest accepted number of bytes
+     * @return flipped buffer holding the content of the stream
+     */
+    public ByteBuffer readDirect(InputStream in, long size, long maxSize) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(in);
+        ByteBuffer buffer = allocateDirect(size, maxSize);
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                // Only grow when the stream really holds more than announced
+                int next = in.read();
+                if (next < 0) {
+                    break;
+                }
+                if (buffer.capacity() >= maxSize) {
+                    throw new PayloadTooLargeException("Image must not be larger than " + maxSize + " bytes");
+                }
+                buffer = grow(buffer, maxSize);
+                buffer.put((byte) next);
+            }
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Allocate a direct buffer for content of a known or unknown size
+     *
+     * @param size
+     *            Number of bytes the content holds, or -1 when unknown
+     * @param maxSize
+     *            Largest accepted number of bytes
+     * @return empty buffer of the announced size, but at most {@link #MAX_INITIAL_CAPACITY} bytes
+     */
+    public ByteBuffer allocateDirect(long size, long maxSize) {
+        if (size > maxSize) {
+            throw new PayloadTooLargeException("Image must not be larger than " + maxSize + " bytes");
+        }
+        return ByteBuffer.allocateDirect((int) Math.min(maxSize, size >= 0 ? Math.min(size, MAX_INITIAL_CAPACITY) : INITIAL_CAPACITY));
+    }
+
+    /**
+     * Copy a chunk of content into a direct buffer, the buffer is grown when the chunk does not fit
+     *
+     * @param buffer
+     *            Buffer in write mode
+     * @param chunk
+     *            Bytes to be appended, it is consumed
+     * @param maxSize
+     *            Largest accepted number of bytes
+     * @return the given buffer or a larger copy of it, holding the chunk
+     */
+    public ByteBuffer append(ByteBuffer buffer, ByteBuffer chunk, long maxSize) {
+        while (buffer.remaining() < chunk.remaining()) {
+            if (buffer.capacity() >= maxSize) {
+                throw new PayloadTooLargeException("Image must not be larger than " + maxSize + " bytes");
+            }
+            buffer = grow(buffer, maxSize);
+        }
+        buffer.put(chunk);
+        return buffer;
+    }
+
+    private ByteBuffer grow(ByteBuffer buffer, long maxSize) {
+        ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min(maxSize, Math.max(INITIAL_CAPACITY, 2L * buffer.capacity())));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
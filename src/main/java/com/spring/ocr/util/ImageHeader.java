@@ -0,0 +1,120 @@
+package com.spring.ocr.util;
+
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Format and dimensions of an encoded image, read from its header without decoding any pixels
+ */
+@Value
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ImageHeader {
+
+    public enum Format { PNG, JPEG }
+
+    Format format;
+    int width;
+    int height;
+    int channels;
+
+    public long getPixels() {
+        return (long) width * height;
+    }
+
+    /**
+     * Read the header of a PNG or JPEG image
+     * @param image encoded image between position and limit, the buffer position is not changed
+     * @return the header or null when the format is not recognized or the header is truncated
+     */
+    public static ImageHeader read(ByteBuffer image) {
+        ByteBuffer buffer = image.slice().order(ByteOrder.BIG_ENDIAN);
+        Format format = format(buffer);
+        if (format == Format.PNG) {
+            return readPng(buffer);
+        }
+        if (format == Format.JPEG) {
+            return readJpeg(buffer);
+        }
+        return null;
+    }
+
+    /**
+     * Recognize a PNG or JPEG image by its leading magic bytes
+     * @param image encoded image or its first bytes between position and limit, the buffer position is not changed
+     * @return the format or null when it is not recognized
+     */
+    public static Format format(ByteBuffer image) {
+        ByteBuffer buffer = image.slice().order(ByteOrder.BIG_ENDIAN);
+        if (isPng(buffer)) {
+            return Format.PNG;
+        }
+        if (isJpeg(buffer)) {
+            return Format.JPEG;
+        }
+        return null;
+    }
+
+    private static boolean isPng(ByteBuffer buffer) {
+        return buffer.remaining() >= 8 && buffer.getLong(0) == 0x89504E470D0A1A0AL;
+    }
+
+    private static boolean isJpeg(ByteBuffer buffer) {
+        return buffer.remaining() >= 3 && (buffer.get(0) & 0xFF) == 0xFF && (buffer.get(1) & 0xFF) == 0xD8
+                && (buffer.get(2) & 0xFF) == 0xFF;
+    }
+
+    /**
+     * The IHDR chunk always comes first: length, type, width, height, bit depth, color type
+     */
+    private static ImageHeader readPng(ByteBuffer buffer) {
+        if (buffer.remaining() < 26 || buffer.getInt(12) != 0x49484452) {
+            return null;
+        }
+        int channels;
+        switch (buffer.get(25)) {
+            case 0: channels = 1; break;
+            case 2: channels = 3; break;
+            case 3: channels = 3; break;
+            case 4: channels = 2; break;
+            case 6: channels = 4; break;
+            default: return null;
+        }
+        return new ImageHeader(Format.PNG, buffer.getInt(16), buffer.getInt(20), channels);
+    }
+
+    /**
+     * Walk the marker segments up to the first start of frame: precision, height, width, components
+     */
+    private static ImageHeader readJpeg(ByteBuffer buffer) {
+        int offset = 2;
+        while (offset + 4 <= buffer.remaining()) {
+            if ((buffer.get(offset) & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = buffer.get(offset + 1) & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte
+                offset++;
+                continue;
+            }
+            int length = buffer.getShort(offset + 2) & 0xFFFF;
+            if (isStartOfFrame(marker)) {
+                if (offset + 10 > buffer.remaining()) {
+                    return null;
+                }
+                return new ImageHeader(Format.JPEG, buffer.getShort(offset + 7) & 0xFFFF,
+                        buffer.getShort(offset + 5) & 0xFFFF, buffer.get(offset + 9) & 0xFF);
+            }
+            offset += 2 + length;
+        }
+        return null;
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+}
@@ -0,0 +1,33 @@
+package com.spring.ocr.util;
+
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Cheap estimates of how clean a gray image is, measured on a shrunk copy by {@link OpencvUtil#imageQuality(org.opencv.core.Mat, long)}
+ */
+@Value
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ImageQuality {
+
+    /**
+     * Standard deviation of the pixel noise in flat areas, in gray levels
+     */
+    double noise;
+
+    /**
+     * Gray levels between the darkest and the lightest percent of the pixels
+     */
+    double contrast;
+
+    /**
+     * Variance of the Laplacian relative to the squared contrast, low values mean a blurred image
+     */
+    double sharpness;
+
+    /**
+     * Angle of the text lines in degrees, positive when they descend to the right
+     */
+    double skew;
+}
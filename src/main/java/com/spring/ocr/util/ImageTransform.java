@@ -0,0 +1,99 @@
+package com.spring.ocr.util;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Maps points of a preprocessed image back to the image as it was uploaded.
+ * Preprocessing may decode the image reduced, shrink it and rotate it onto a larger canvas,
+ * every such step is added to the transform so the boxes found by the engine can be reported in the uploaded image.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public final class ImageTransform {
+
+    private static final ImageTransform IDENTITY = new ImageTransform(new double[]{1, 0, 0, 0, 1, 0});
+
+    /**
+     * Affine map from the preprocessed image to the uploaded image, x = m0 * u + m1 * v + m2 and y = m3 * u + m4 * v + m5
+     */
+    double[] m;
+
+    private ImageTransform(double[] m) {
+        this.m = m;
+    }
+
+    /**
+     * The transform of an image that has not been changed
+     * @return
+     */
+    public static ImageTransform identity() {
+        return IDENTITY;
+    }
+
+    /**
+     * The image was scaled by the factor after this transform
+     * @param scale
+     * @return
+     */
+    public ImageTransform scaled(double scale) {
+        return then(new double[]{1 / scale, 0, 0, 0, 1 / scale, 0});
+    }
+
+    /**
+     * The image was warped with the 2x3 affine matrix after this transform, such as the rotation of {@link OpencvUtil#rotation}
+     * @param affine
+     * @return
+     */
+    public ImageTransform warped(double[] affine) {
+        double det = affine[0] * affine[4] - affine[1] * affine[3];
+        double a = affine[4] / det;
+        double b = -affine[1] / det;
+        double d = -affine[3] / det;
+        double e = affine[0] / det;
+        return then(new double[]{a, b, -a * affine[2] - b * affine[5], d, e, -d * affine[2] - e * affine[5]});
+    }
+
+    public boolean isIdentity() {
+        return this == IDENTITY;
+    }
+
+    /**
+     * The box of the preprocessed image in the uploaded image, the smallest upright box around its mapped corners
+     * @param left
+     * @param top
+     * @param width
+     * @param height
+     * @return left, top, width and height, cut off at the top left edge of the image
+     */
+    public int[] box(int left, int top, int width, int height) {
+        if (isIdentity()) {
+            return new int[]{left, top, width, height};
+        }
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int u = left; u <= left + width; u += Math.max(1, width)) {
+            for (int v = top; v <= top + height; v += Math.max(1, height)) {
+                double x = m[0] * u + m[1] * v + m[2];
+                double y = m[3] * u + m[4] * v + m[5];
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+            }
+        }
+        int x = (int) Math.max(0, Math.floor(minX));
+        int y = (int) Math.max(0, Math.floor(minY));
+        return new int[]{x, y, Math.max(0, (int) Math.ceil(maxX) - x), Math.max(0, (int) Math.ceil(maxY) - y)};
+    }
+
+    /**
+     * This transform applied after the inner one, which maps the new image to the previous one
+     */
+    private ImageTransform then(double[] inner) {
+        return new ImageTransform(new double[]{
+                m[0] * inner[0] + m[1] * inner[3], m[0] * inner[1] + m[1] * inner[4], m[0] * inner[2] + m[1] * inner[5] + m[2],
+                m[3] * inner[0] + m[4] * inner[3], m[3] * inner[1] + m[4] * inner[4], m[3] * inner[2] + m[4] * inner[5] + m[5]});
+    }
+}
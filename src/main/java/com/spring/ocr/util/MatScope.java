@@ -0,0 +1,111 @@
+package com.spring.ocr.util;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Releases the native memory of every Mat tracked on the current thread when the scope is closed,
+ * instead of leaving it to the finalizers.
+ *
+ * <pre>
+ * try (MatScope scope = MatScope.open()) {
+ *     Mat gray = OpencvUtil.gray(image);
+ *     ...
+ * }
+ * </pre>
+ *
+ * Outside of an open scope {@link #track(Mat)} does nothing and the Mat is owned by the caller.
+ */
+public final class MatScope implements AutoCloseable {
+
+    private static final ThreadLocal<MatScope> CURRENT = new ThreadLocal<>();
+    private static final AtomicLong LIVE_MATS = new AtomicLong();
+    private static final AtomicLong LIVE_BYTES = new AtomicLong();
+
+    private final MatScope parent;
+    private final List<Mat> mats = new ArrayList<>();
+    private long bytes;
+
+    private MatScope(MatScope parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Open a scope on the current thread, nested scopes release their Mats first
+     * @return
+     */
+    public static MatScope open() {
+        MatScope scope = new MatScope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Register a Mat with the innermost open scope of the current thread
+     * @param mat
+     * @return the same Mat
+     */
+    public static <T extends Mat> T track(T mat) {
+        MatScope scope = CURRENT.get();
+        if (scope != null) {
+            scope.add(mat, mat.isSubmatrix() ? 0 : mat.total() * mat.elemSize());
+        }
+        return mat;
+    }
+
+    /**
+     * Register a view such as a submat or rowRange with the innermost open scope of the current thread
+     * The view is released with the scope but its pixels are not counted, they belong to the Mat it was taken from.
+     * @param view
+     * @return the same Mat
+     */
+    public static <T extends Mat> T trackView(T view) {
+        MatScope scope = CURRENT.get();
+        if (scope != null) {
+            scope.add(view, 0);
+        }
+        return view;
+    }
+
+    /**
+     * Number of tracked Mats that have not been released yet
+     * @return
+     */
+    public static long liveMats() {
+        return LIVE_MATS.get();
+    }
+
+    /**
+     * Size of the pixel data owned by the tracked Mats that have not been released yet, views are not counted
+     * @return
+     */
+    public static long liveBytes() {
+        return LIVE_BYTES.get();
+    }
+
+    private void add(Mat mat, long size) {
+        mats.add(mat);
+        bytes += size;
+        LIVE_MATS.incrementAndGet();
+        LIVE_BYTES.addAndGet(size);
+    }
+
+    @Override
+    public void close() {
+        for (int i = mats.size() - 1; i >= 0; i--) {
+            mats.get(i).release();
+        }
+        LIVE_MATS.addAndGet(-mats.size());
+        LIVE_BYTES.addAndGet(-bytes);
+        mats.clear();
+        bytes = 0;
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package com.spring.ocr.util;
 
 import lombok.experimental.UtilityClass;
+import org.opencv.core.Core;
 import org.opencv.core.Mat;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 @UtilityClass
 public class OcrUtil {
@@ -30,23 +33,69 @@ public class OcrUtil {
     }
 
     /**
-     * OCR preprocessing
-     * @return
+     * Split an image into horizontal tiles of about tileHeight rows
+     * Each cut is moved to the closest blank row within a quarter tile, tiles cut along a blank row do not overlap.
+     * When no blank row is found the tiles overlap by the given number of rows on both sides of the cut.
+     * @param mat gray image
+     * @param tileHeight
+     * @param overlap
+     * @return tiles from top to bottom
      */
-    public Mat preprocess(Mat mat){
-        //Grayscale
-        mat=OpencvUtil.gray(mat);
-
-
-        //gaussianBlur
-        mat=OpencvUtil.gaussianBlur(mat);
+    public List<Tile> tiles(Mat mat, int tileHeight, int overlap) {
+        byte[] rowMin = rowMinimum(mat);
+        int rows = mat.rows();
+        int window = tileHeight / 4;
 
+        List<Integer> cuts = new ArrayList<>();
+        List<Integer> overlaps = new ArrayList<>();
+        cuts.add(0);
+        overlaps.add(0);
+        int top = 0;
+        while (rows - top > tileHeight + window) {
+            int target = top + tileHeight;
+            int cut = blankRowNear(rowMin, target, window);
+            cuts.add(cut < 0 ? target : cut);
+            overlaps.add(cut < 0 ? overlap : 0);
+            top = cuts.get(cuts.size() - 1);
+        }
+        cuts.add(rows);
+        overlaps.add(0);
 
-        //Remove Noise
-        mat=OpencvUtil.navieRemoveNoise(mat,1);
+        List<Tile> tiles = new ArrayList<>();
+        for (int i = 0; i < cuts.size() - 1; i++) {
+            int ownTop = cuts.get(i);
+            int ownBottom = cuts.get(i + 1);
+            tiles.add(new Tile(Math.max(0, ownTop - overlaps.get(i)), Math.min(rows, ownBottom + overlaps.get(i + 1)),
+                    ownTop, ownBottom));
+        }
+        return tiles;
+    }
 
+    /**
+     * Darkest value of every row
+     */
+    private byte[] rowMinimum(Mat mat) {
+        Mat reduced = new Mat();
+        Core.reduce(mat, reduced, 1, Core.REDUCE_MIN);
+        byte[] rowMin = new byte[mat.rows()];
+        reduced.get(0, 0, rowMin);
+        reduced.release();
+        return rowMin;
+    }
 
-        return mat;
+    /**
+     * Closest row to target without dark pixels, or -1
+     */
+    private int blankRowNear(byte[] rowMin, int target, int window) {
+        for (int d = 0; d <= window; d++) {
+            if (target - d > 0 && (rowMin[target - d] & 0xFF) > 127) {
+                return target - d;
+            }
+            if (target + d < rowMin.length && (rowMin[target + d] & 0xFF) > 127) {
+                return target + d;
+            }
+        }
+        return -1;
     }
 
 }
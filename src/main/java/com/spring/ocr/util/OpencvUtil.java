@@ -1,5 +1,6 @@
 package com.spring.ocr.util;
 
+import com.sun.jna.Pointer;
 import lombok.experimental.UtilityClass;
 import org.opencv.core.Point;
 import org.opencv.core.*;
@@ -12,7 +13,9 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -21,15 +24,20 @@ public class OpencvUtil {
 
     static final int BLACK = 0;
     static final int WHITE = 255;
+    // Coarse to fine search steps of the skew angle in degrees, the last one sets the precision of the estimate
+    static final double[] SKEW_STEPS = {1, 0.2, 0.04};
 
     /**
      * Grayscale
      * @return
      */
     public Mat gray(Mat mat){
+        if (mat.channels() == 1) {
+            return mat;
+        }
         Mat gray = new Mat();
         Imgproc.cvtColor(mat, gray, Imgproc.COLOR_BGR2GRAY,1);
-        return gray;
+        return MatScope.track(gray);
     }
 
     /**
@@ -39,7 +47,7 @@ public class OpencvUtil {
     public Mat binary(Mat mat){
         Mat binary = new Mat();
         Imgproc.adaptiveThreshold(mat, binary, 255, Imgproc.ADAPTIVE_THRESH_MEAN_C, Imgproc.THRESH_BINARY_INV, 25, 10);
-        return binary;
+        return MatScope.track(binary);
     }
 
     /**
@@ -50,7 +58,7 @@ public class OpencvUtil {
     public Mat blur(Mat mat) {
         Mat blur = new Mat();
         Imgproc.blur(mat,blur,new Size(5,5));
-        return blur;
+        return MatScope.track(blur);
     }
 
     /**
@@ -61,7 +69,7 @@ public class OpencvUtil {
     public Mat gaussianBlur(Mat mat) {
         Mat gaussianBlur = new Mat();
         Imgproc.GaussianBlur(mat,gaussianBlur, new Size(3, 3),0);
-        return gaussianBlur;
+        return MatScope.track(gaussianBlur);
     }
 
     /**
@@ -72,7 +80,7 @@ public class OpencvUtil {
     public Mat sobel(Mat mat) {
         Mat sobel = new Mat();
         Imgproc.Sobel(mat, sobel, -1, 1, 0);
-        return sobel;
+        return MatScope.track(sobel);
     }
 
     /**
@@ -82,8 +90,8 @@ public class OpencvUtil {
      */
     public Mat otsu(Mat mat) {
         Mat otsu = new Mat();
-        Imgproc.threshold(mat, otsu, 0, 255,  3);
-        return otsu;
+        Imgproc.threshold(mat, otsu, 0, 255, Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);
+        return MatScope.track(otsu);
     }
 
     /**
@@ -92,11 +100,22 @@ public class OpencvUtil {
      * @return
      */
     public Mat dilate(Mat mat,int size){
-        Mat dilate=new Mat();
         Mat element = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(size,size));
+        Mat dilate = dilate(mat, element);
+        element.release();
+        return dilate;
+    }
 
+    /**
+     * Dilate with a structuring element that is reused across calls
+     * @param mat
+     * @param element
+     * @return
+     */
+    public Mat dilate(Mat mat,Mat element){
+        Mat dilate=new Mat();
         Imgproc.dilate(mat, dilate, element, new Point(-1, -1), 1);
-        return dilate;
+        return MatScope.track(dilate);
     }
 
     /**
@@ -105,11 +124,22 @@ public class OpencvUtil {
      * @return
      */
     public Mat erode(Mat mat,int size){
-        Mat erode=new Mat();
         Mat element = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(size,size));
+        Mat erode = erode(mat, element);
+        element.release();
+        return erode;
+    }
 
+    /**
+     * Erode with a structuring element that is reused across calls
+     * @param mat
+     * @param element
+     * @return
+     */
+    public Mat erode(Mat mat,Mat element){
+        Mat erode=new Mat();
         Imgproc.erode(mat, erode, element, new Point(-1, -1), 1);
-        return erode;
+        return MatScope.track(erode);
     }
 
     /**
@@ -122,7 +152,7 @@ public class OpencvUtil {
         Imgproc.GaussianBlur(mat, dst, new Size(3,3), 0);
 
         Imgproc.Canny(mat, dst, 50, 150);
-        return dst;
+        return MatScope.track(dst);
     }
 
     /**
@@ -134,6 +164,8 @@ public class OpencvUtil {
         List<MatOfPoint> contours=new ArrayList<>();
         Mat hierarchy = new Mat();
         Imgproc.findContours(mat, contours, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+        hierarchy.release();
+        contours.forEach(MatScope::track);
         return contours;
     }
 
@@ -251,6 +283,7 @@ public class OpencvUtil {
         }else{
             mat=begin;
         }
+        storage.release();
         return mat;
     }
 
@@ -317,6 +350,7 @@ public class OpencvUtil {
                 Imgproc.line(mat, pt1, pt2, new Scalar(255), 3);
             }
         }
+        storage.release();
         return mat;
     }
 
@@ -332,7 +366,7 @@ public class OpencvUtil {
         int xl=xLength(pointList)>mat.cols()-x?mat.cols()-x:xLength(pointList);
         int yl=yLength(pointList)>mat.rows()-y?mat.rows()-y:yLength(pointList);
         Rect re=new Rect(x,y,xl,yl);
-        return new Mat(mat,re);
+        return MatScope.track(new Mat(mat,re));
     }
 
     /**
@@ -362,7 +396,8 @@ public class OpencvUtil {
 
         Imgproc.warpAffine(splitImage, imgDst, affineTrans, imgDst.size(),
                 Imgproc.INTER_CUBIC | Imgproc.WARP_FILL_OUTLIERS);
-        return imgDst;
+        affineTrans.release();
+        return MatScope.track(imgDst);
     }
 
     /**
@@ -379,101 +414,117 @@ public class OpencvUtil {
             Imgproc.equalizeHist(mv.get(i), mv.get(i));
         }
         Core.merge(mv, dst);
-        return dst;
+        mv.forEach(Mat::release);
+        return MatScope.track(dst);
     }
 
     /**
      * 8 neighborhood noise reduction is a bit like 9-square grid noise reduction; that is, if the center of the 9-square grid is surrounded by different colors, it will be assimilated
+     * The pixels are copied out of the mat once, processed in place in scan order and written back with a single put
+     * Only 8-bit images are accepted, a black point is a pixel of exactly 0
      * @param pNum default value is 1
      */
     public Mat navieRemoveNoise(Mat mat,int pNum) {
-        int i, j, m, n, nValue, nCount;
+        if (mat.depth() != CvType.CV_8U) {
+            throw new IllegalArgumentException("Noise can only be removed from 8-bit mats, got " + CvType.typeToString(mat.type()));
+        }
         int nWidth = mat.cols();
         int nHeight = mat.rows();
+        int channels = mat.channels();
+        int stride = nWidth * channels;
 
-        for (j = 1; j < nHeight - 1; ++j) {
-            for (i = 1; i < nWidth - 1; ++i) {
-                nValue =  (int)mat.get(j, i)[0];
-                if (nValue == 0) {
-                    nCount = 0;
-
-                    // Compare the 9-square grid with (j ,i) as the center, if the surroundings are white, assimilate
-                    for (m = j - 1; m <= j + 1; ++m) {
-                        for (n = i - 1; n <= i + 1; ++n) {
-                            if ((int)mat.get(m, n)[0] == 0) {
-                                nCount++;
-                            }
-                        }
-                    }
+        byte[] pixels = new byte[nHeight * stride];
+        mat.get(0, 0, pixels);
+
+        for (int j = 1; j < nHeight - 1; ++j) {
+            for (int i = 1; i < nWidth - 1; ++i) {
+                int center = j * stride + i * channels;
+                // Count the black points of the 9-square grid with (j ,i) as the center
+                int nCount = countBlack(pixels, center - stride - channels, channels)
+                        + countBlack(pixels, center - channels, channels)
+                        + countBlack(pixels, center + stride - channels, channels);
+                if (pixels[center] == BLACK) {
                     if (nCount <= pNum) {
                         // The number of surrounding black points is less than the threshold pNum, set the point to white
-                        mat.put(j, i, WHITE);
-                    }
-                } else {
-                    nCount = 0;
-                    for (m = j - 1; m <= j + 1; ++m) {
-                        for (n = i - 1; n <= i + 1; ++n) {
-                            if ((int)mat.get(m, n)[0] == 0) {
-                                nCount++;
-                            }
-                        }
-                    }
-                    if (nCount >= 7) {
-                        // The number of black points around is greater than or equal to 7, set the point to black; that is, the surroundings are all black
-                        mat.put(j, i, BLACK);
+                        pixels[center] = (byte) WHITE;
                     }
+                } else if (nCount >= 7) {
+                    // The number of black points around is greater than or equal to 7, set the point to black; that is, the surroundings are all black
+                    pixels[center] = BLACK;
                 }
             }
         }
+        mat.put(0, 0, pixels);
         return mat;
     }
 
+    /**
+     * Count the black points among three horizontally adjacent pixels
+     * @param pixels
+     * @param offset index of the leftmost pixel
+     * @param channels
+     * @return
+     */
+    private int countBlack(byte[] pixels, int offset, int channels) {
+        int count = 0;
+        if (pixels[offset] == BLACK) {
+            count++;
+        }
+        if (pixels[offset + channels] == BLACK) {
+            count++;
+        }
+        if (pixels[offset + 2 * channels] == BLACK) {
+            count++;
+        }
+        return count;
+    }
+
     /**
      * Connected domain noise reduction
+     * Black regions (4-connected) with an area of at most pArea pixels are set to white and every other non-white point is set to black.
+     * The regions are labelled in a single connected components pass, so the input is expected to be a binarized single channel image
      * @param pArea The default value is 1
      */
     public Mat contoursRemoveNoise(Mat mat,double pArea) {
-        //mat=floodFill(mat,mat.new Point(mat.cols()/2,mat.rows()/2),new Color(225,0,0));
-        int i, j, color = 1;
-        int nWidth =  mat.cols(), nHeight = mat.rows();
-
-        for (i = 0; i < nWidth; ++i) {
-            for (j = 0; j < nHeight; ++j) {
-                if ((int) mat.get(j, i)[0] == BLACK) {
-                    //Fill each black dot in the link area with a different color
-                    Imgproc.floodFill(mat, new Mat(), new Point(i, j), new Scalar(color));
-                    color++;
-                }
-            }
-        }
+        Mat black = new Mat();
+        Core.compare(mat, new Scalar(BLACK), black, Core.CMP_EQ);
 
-        //Count the number of different color points
-        int[] ColorCount = new int[255];
+        Mat labels = new Mat();
+        Mat stats = new Mat();
+        Mat centroids = new Mat();
+        int count = Imgproc.connectedComponentsWithStats(black, labels, stats, centroids, 4, CvType.CV_32S);
 
-        //Remove noise
-        for (i = 0; i < nWidth; ++i) {
-            for (j = 0; j < nHeight; ++j) {
-                if ((int) mat.get(j, i)[0] != 255) {
-                    ColorCount[(int) mat.get(j, i)[0] - 1]++;
-                }
-            }
+        //Find the regions that are too small, label 0 is the white background
+        int[] stat = new int[count * Imgproc.CC_STAT_MAX];
+        stats.get(0, 0, stat);
+        boolean[] noise = new boolean[count];
+        boolean hasNoise = false;
+        for (int label = 1; label < count; label++) {
+            noise[label] = stat[label * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_AREA] <= pArea;
+            hasNoise |= noise[label];
         }
 
-        for (i = 0; i < nWidth; ++i) {
-            for (j = 0; j < nHeight; ++j) {
-                if (ColorCount[(int) mat.get(j, i)[0] - 1] <= pArea) {
-                    mat.put(j, i, WHITE);
-                }
-            }
-        }
+        //Every point that is not white becomes black
+        Imgproc.threshold(mat, mat, WHITE - 1, WHITE, Imgproc.THRESH_BINARY);
 
-        for (i = 0; i < nWidth; ++i) {
-            for (j = 0; j < nHeight; ++j) {
-                if ((int) mat.get(j, i)[0] < WHITE) {
-                    mat.put(j, i, BLACK);
+        //Remove noise
+        if (hasNoise) {
+            int[] label = new int[(int) labels.total()];
+            labels.get(0, 0, label);
+            byte[] pixels = new byte[(int) mat.total()];
+            mat.get(0, 0, pixels);
+            for (int i = 0; i < label.length; i++) {
+                if (noise[label[i]]) {
+                    pixels[i] = (byte) WHITE;
                 }
             }
+            mat.put(0, 0, pixels);
         }
+
+        black.release();
+        labels.release();
+        stats.release();
+        centroids.release();
         return mat;
     }
 
@@ -486,9 +537,12 @@ public class OpencvUtil {
         MatOfPoint2f mat2f=new MatOfPoint2f();
         contour.convertTo(mat2f,CvType.CV_32FC1);
         RotatedRect rect=Imgproc.minAreaRect(mat2f);
+        mat2f.release();
         Mat points=new Mat();
         Imgproc.boxPoints(rect,points);
-        return getPoints(points.dump());
+        List<Point> pointList = getPoints(points.dump());
+        points.release();
+        return pointList;
     }
 
     /**
@@ -500,6 +554,7 @@ public class OpencvUtil {
         MatOfPoint2f mat2f=new MatOfPoint2f();
         contour.convertTo(mat2f,CvType.CV_32FC1);
         RotatedRect rect=Imgproc.minAreaRect(mat2f);
+        mat2f.release();
         return rect.boundingRect().area();
     }
 
@@ -575,6 +630,7 @@ public class OpencvUtil {
         MatOfByte mob = new MatOfByte();
         Imgcodecs.imencode(fileExtension, matrix, mob);
         byte[] byteArray = mob.toArray();
+        mob.release();
         BufferedImage bufImage = null;
         try {
             InputStream in = new ByteArrayInputStream(byteArray);
@@ -585,6 +641,21 @@ public class OpencvUtil {
         return bufImage;
     }
 
+    /**
+     * Expose the pixels of a Mat as a direct ByteBuffer without copying them
+     * The buffer points into the native memory of the Mat, so the Mat must stay alive and unchanged while the buffer is used
+     *
+     * @param matrix
+     *            Continuous 8-bit Mat
+     * @return
+     */
+    public ByteBuffer matToByteBuffer (Mat matrix) {
+        if (matrix.depth() != CvType.CV_8U || !matrix.isContinuous()) {
+            throw new IllegalArgumentException("Only continuous 8-bit mats can be shared as a buffer");
+        }
+        return new Pointer(matrix.dataAddr()).getByteBuffer(0, matrix.total() * matrix.elemSize());
+    }
+
     /**
      * Convert BufferedImage to Mat
      *
@@ -608,12 +679,13 @@ public class OpencvUtil {
             } finally {
                 g.dispose();
             }
+            original = image;
         }
         DataBufferByte dbi =(DataBufferByte)original.getRaster().getDataBuffer();
         byte[] pixels = dbi.getData();
-        Mat mat = Mat.eye(original.getHeight(), original.getWidth(), matType);
+        Mat mat = new Mat(original.getHeight(), original.getWidth(), matType);
         mat.put(0, 0, pixels);
-        return mat;
+        return MatScope.track(mat);
     }
 
     /**
@@ -624,9 +696,341 @@ public class OpencvUtil {
      * @return
      */
     public Mat byteArrayToMat (byte[] original) {
-        Mat mat = Imgcodecs.imdecode(new MatOfByte(original), Imgcodecs.IMREAD_UNCHANGED);
-        return mat;
+        MatOfByte buffer = new MatOfByte(original);
+        Mat mat = Imgcodecs.imdecode(buffer, Imgcodecs.IMREAD_UNCHANGED);
+        buffer.release();
+        return MatScope.track(mat);
+    }
+
+    /**
+     * Decode an encoded image straight from a direct ByteBuffer
+     * The buffer is wrapped by a Mat header instead of being copied
+     *
+     * @param original
+     *            Direct buffer holding the encoded image between position and limit
+     * @return
+     */
+    public Mat byteBufferToMat (ByteBuffer original) {
+        return byteBufferToMat(original, Imgcodecs.IMREAD_UNCHANGED);
+    }
+
+    /**
+     * Decode an encoded image straight from a direct ByteBuffer
+     *
+     * @param original
+     *            Direct buffer holding the encoded image between position and limit
+     * @param flags
+     *            Imgcodecs read mode such as Imgcodecs.IMREAD_REDUCED_GRAYSCALE_4
+     * @return
+     */
+    public Mat byteBufferToMat (ByteBuffer original, int flags) {
+        ByteBuffer encoded = original.slice();
+        Mat buffer = new Mat(1, encoded.remaining(), CvType.CV_8UC1, encoded);
+        Mat mat = Imgcodecs.imdecode(buffer, flags);
+        buffer.release();
+        return MatScope.track(mat);
+    }
+
+    /**
+     * Resize
+     * Shrinking averages the covered pixels, which keeps thin strokes instead of dropping them
+     * @param mat
+     * @param scale
+     * @return
+     */
+    public Mat resize(Mat mat, double scale) {
+        Mat resized = new Mat();
+        Imgproc.resize(mat, resized, new Size(), scale, scale, scale < 1 ? Imgproc.INTER_AREA : Imgproc.INTER_CUBIC);
+        return MatScope.track(resized);
     }
 
+    /**
+     * Estimate the height of the text in a gray image
+     * Dark connected regions shaped like glyphs are measured on an image of at most maxPixels pixels,
+     * the median of their heights is scaled back to the size of the image.
+     * @param mat gray image with dark text on a light background
+     * @param maxPixels larger images are measured on a shrunk copy
+     * @return median glyph height in pixels, or -1 when too few glyphs were found
+     */
+    public double textHeight(Mat mat, long maxPixels) {
+        int factor = 1;
+        while (mat.total() / ((long) factor * factor) > maxPixels) {
+            factor *= 2;
+        }
+        Mat sample = mat;
+        if (factor > 1) {
+            sample = new Mat();
+            Imgproc.resize(mat, sample, new Size(), 1.0 / factor, 1.0 / factor, Imgproc.INTER_AREA);
+        }
+
+        Mat binary = new Mat();
+        Imgproc.threshold(sample, binary, 0, WHITE, Imgproc.THRESH_BINARY_INV | Imgproc.THRESH_OTSU);
+        Mat labels = new Mat();
+        Mat stats = new Mat();
+        Mat centroids = new Mat();
+        int count = Imgproc.connectedComponentsWithStats(binary, labels, stats, centroids, 8, CvType.CV_32S);
+        int[] stat = new int[count * Imgproc.CC_STAT_MAX];
+        stats.get(0, 0, stat);
+        binary.release();
+        labels.release();
+        stats.release();
+        centroids.release();
+        if (sample != mat) {
+            sample.release();
+        }
+
+        //Skip specks, lines and blocks that are too large to be a glyph, label 0 is the background
+        int maxHeight = mat.rows() / factor / 4;
+        int[] heights = new int[count];
+        int glyphs = 0;
+        for (int label = 1; label < count; label++) {
+            int width = stat[label * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_WIDTH];
+            int height = stat[label * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_HEIGHT];
+            int area = stat[label * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_AREA];
+            if (height >= 3 && height <= maxHeight && width <= 3 * height && area >= height) {
+                heights[glyphs++] = height;
+            }
+        }
+        if (glyphs < 20) {
+            return -1;
+        }
+        Arrays.sort(heights, 0, glyphs);
+        return (double) heights[glyphs / 2] * factor;
+    }
+
+    /**
+     * Estimate noise, contrast, blur and skew of a gray image
+     * Noise and blur are measured on the center of larger images, shrinking would average the noise away and blur the strokes.
+     * Contrast and skew are measured on a shrunk copy of the whole image.
+     * Noise follows Immerkaer's fast estimate, restricted to areas without edges so text strokes are not counted as noise.
+     * @param mat gray image
+     * @param maxPixels size of the measured center
+     * @return
+     */
+    public ImageQuality imageQuality(Mat mat, long maxPixels) {
+        Mat sample = center(mat, maxPixels);
+
+        Mat kernel = noiseKernel();
+        Mat laplace = new Mat();
+        Imgproc.filter2D(sample, laplace, CvType.CV_32F, kernel);
+        Core.absdiff(laplace, Scalar.all(0), laplace);
+        Mat smooth = new Mat();
+        Imgproc.GaussianBlur(sample, smooth, new Size(5, 5), 0);
+        Mat gradient = new Mat();
+        Mat element = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
+        Imgproc.morphologyEx(smooth, gradient, Imgproc.MORPH_GRADIENT, element);
+        Mat flat = new Mat();
+        Core.compare(gradient, new Scalar(24), flat, Core.CMP_LT);
+        boolean hasFlatArea = Core.countNonZero(flat) > sample.total() / 10;
+        double noise = (hasFlatArea ? Core.mean(laplace, flat) : Core.mean(laplace)).val[0] * Math.sqrt(Math.PI / 2) / 6;
+
+        Mat sharp = new Mat();
+        Imgproc.Laplacian(sample, sharp, CvType.CV_16S);
+        MatOfDouble mean = new MatOfDouble();
+        MatOfDouble deviation = new MatOfDouble();
+        Core.meanStdDev(sharp, mean, deviation);
+        double sampleContrast = contrast(sample, 0.01);
+        double sharpness = deviation.get(0, 0)[0] * deviation.get(0, 0)[0] / Math.max(1, sampleContrast * sampleContrast);
+
+        // Nearest neighbour keeps the gray levels of thin strokes, the skew only needs the rough shape of the lines
+        Mat shrunk = mat;
+        if (mat.total() > maxPixels / 4) {
+            shrunk = new Mat();
+            double scale = Math.sqrt((double) maxPixels / 4 / mat.total());
+            Imgproc.resize(mat, shrunk, new Size(), scale, scale, Imgproc.INTER_NEAREST);
+        }
+        double contrast = Math.max(sampleContrast, contrast(shrunk, 0.01));
+        double skew = skewAngle(shrunk, shrunk.total());
+        if (shrunk != mat) {
+            shrunk.release();
+        }
+
+        kernel.release();
+        laplace.release();
+        smooth.release();
+        gradient.release();
+        element.release();
+        flat.release();
+        sharp.release();
+        mean.release();
+        deviation.release();
+        sample.release();
+        return new ImageQuality(noise, contrast, sharpness, skew);
+    }
+
+    /**
+     * Straighten the text lines of a gray image
+     * The angle is estimated on a shrunk copy with {@link #skewAngle(Mat, long)} and the image is rotated once at full resolution.
+     * The canvas grows to keep the corners, the new area is filled white.
+     * @param mat gray image with dark text on a light background
+     * @param maxPixels the angle is estimated on a copy of at most this size
+     * @param minAngle smaller angles are left alone, rotating interpolates every pixel
+     * @return the straightened image, or the image itself when it is not skewed
+     */
+    public Mat deskew(Mat mat, long maxPixels, double minAngle) {
+        double angle = skewAngle(mat, maxPixels);
+        return Math.abs(angle) < minAngle ? mat : rotate(mat, angle);
+    }
+
+    /**
+     * Rotate a gray image around its center onto a canvas that keeps the corners, the new area is filled white
+     * @param mat
+     * @param angle degrees, positive turns the image counterclockwise
+     * @return
+     */
+    public Mat rotate(Mat mat, double angle) {
+        double[] affine = rotation(mat, angle);
+        Mat rotation = new Mat(2, 3, CvType.CV_64F);
+        rotation.put(0, 0, affine);
+        Mat rotated = new Mat();
+        Imgproc.warpAffine(mat, rotated, rotation, rotatedSize(mat, angle), Imgproc.INTER_LINEAR,
+                Core.BORDER_CONSTANT, Scalar.all(WHITE));
+        rotation.release();
+        return MatScope.track(rotated);
+    }
+
+    /**
+     * The 2x3 affine matrix {@link #rotate(Mat, double)} maps the points of the image with, row by row
+     * @param mat
+     * @param angle
+     * @return
+     */
+    public double[] rotation(Mat mat, double angle) {
+        Size size = rotatedSize(mat, angle);
+        double radians = Math.toRadians(angle);
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+        double centerX = mat.cols() / 2.0;
+        double centerY = mat.rows() / 2.0;
+        // Imgproc.getRotationMatrix2D, moved so the center of the image lands on the center of the canvas
+        return new double[]{
+                cos, sin, (1 - cos) * centerX - sin * centerY + (size.width - mat.cols()) / 2.0,
+                -sin, cos, sin * centerX + (1 - cos) * centerY + (size.height - mat.rows()) / 2.0};
+    }
+
+    private Size rotatedSize(Mat mat, double angle) {
+        double radians = Math.toRadians(angle);
+        double sin = Math.abs(Math.sin(radians));
+        double cos = Math.abs(Math.cos(radians));
+        return new Size(Math.ceil(mat.rows() * sin + mat.cols() * cos), Math.ceil(mat.cols() * sin + mat.rows() * cos));
+    }
 
+    /**
+     * Estimate the skew of the text lines with a projection profile
+     * The dark pixels of a binarized shrunk copy are projected onto the vertical axis at candidate angles,
+     * the profile is most peaked when the projection follows the text lines. The search is coarse to fine, no image is rotated.
+     * @param mat gray image with dark text on a light background
+     * @param maxPixels larger images are measured on a shrunk copy
+     * @return angle in degrees within 15 degrees, positive when the lines descend to the right, 0 when there is no text
+     */
+    public double skewAngle(Mat mat, long maxPixels) {
+        Mat sample = shrink(mat, maxPixels);
+        Mat binary = new Mat();
+        Imgproc.threshold(sample, binary, 0, WHITE, Imgproc.THRESH_BINARY_INV | Imgproc.THRESH_OTSU);
+        Mat points = new Mat();
+        Core.findNonZero(binary, points);
+        int count = points.rows();
+        int[] xy = new int[count * 2];
+        if (count > 0) {
+            points.get(0, 0, xy);
+        }
+        int rows = sample.rows();
+        int cols = sample.cols();
+        binary.release();
+        points.release();
+        if (sample != mat) {
+            sample.release();
+        }
+        // Nothing to align, or a page that is mostly dark
+        if (count < 100 || count > (long) rows * cols / 2) {
+            return 0;
+        }
+
+        int stride = Math.max(1, count / 20_000);
+        double best = 0;
+        double range = 15;
+        // Every pass searches one step of the previous pass around its best angle
+        for (double step : SKEW_STEPS) {
+            double center = best;
+            // Angles that project too few pixels differently score the same, ties keep the center
+            double bestScore = projectionScore(xy, count, stride, rows, cols, center);
+            for (double angle = center - range; angle <= center + range + 1e-9; angle += step) {
+                double score = projectionScore(xy, count, stride, rows, cols, angle);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = angle;
+                }
+            }
+            range = step;
+        }
+        return Math.round(Math.max(-15, Math.min(15, best)) * 100) / 100.0;
+    }
+
+    /**
+     * Sum of the squared bins of the projection of the points along lines at the given angle
+     */
+    private double projectionScore(int[] xy, int count, int stride, int rows, int cols, double angle) {
+        double tan = Math.tan(Math.toRadians(angle));
+        int offset = (int) Math.ceil(Math.abs(tan) * cols);
+        int[] bins = new int[rows + 2 * offset + 1];
+        for (int i = 0; i < count; i += stride) {
+            bins[(int) Math.round(xy[2 * i + 1] - xy[2 * i] * tan) + offset]++;
+        }
+        double score = 0;
+        for (int bin : bins) {
+            score += (double) bin * bin;
+        }
+        return score;
+    }
+
+    private double contrast(Mat gray, double tail) {
+        Mat histogram = new Mat();
+        Imgproc.calcHist(Collections.singletonList(gray), new MatOfInt(0), new Mat(), histogram, new MatOfInt(256), new MatOfFloat(0, 256));
+        float[] bins = new float[256];
+        histogram.get(0, 0, bins);
+        histogram.release();
+        double limit = gray.total() * tail;
+        int low = 0;
+        double dark = bins[low];
+        while (dark <= limit && low < 255) {
+            dark += bins[++low];
+        }
+        int high = 255;
+        double light = bins[high];
+        while (light <= limit && high > 0) {
+            light += bins[--high];
+        }
+        return Math.max(0, high - low);
+    }
+
+    private Mat noiseKernel() {
+        Mat kernel = new Mat(3, 3, CvType.CV_32F);
+        kernel.put(0, 0, 1, -2, 1, -2, 4, -2, 1, -2, 1);
+        return kernel;
+    }
+
+    /**
+     * A view of the center of the image with at most maxPixels pixels and the aspect ratio of the image
+     */
+    private Mat center(Mat mat, long maxPixels) {
+        double scale = Math.min(1, Math.sqrt((double) maxPixels / mat.total()));
+        int rows = Math.max(1, (int) (mat.rows() * scale));
+        int cols = Math.max(1, (int) (mat.cols() * scale));
+        int top = (mat.rows() - rows) / 2;
+        int left = (mat.cols() - cols) / 2;
+        return mat.submat(top, top + rows, left, left + cols);
+    }
+
+    /**
+     * A shrunk copy with at most maxPixels pixels, or the image itself when it is small enough
+     */
+    private Mat shrink(Mat mat, long maxPixels) {
+        if (mat.total() <= maxPixels) {
+            return mat;
+        }
+        Mat sample = new Mat();
+        double scale = Math.sqrt((double) maxPixels / mat.total());
+        Imgproc.resize(mat, sample, new Size(), scale, scale, Imgproc.INTER_AREA);
+        return sample;
+    }
 }
@@ -0,0 +1,157 @@
+package com.spring.ocr.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Collects how long each pipeline stage took for the image processed on the current thread.
+ *
+ * <pre>
+ * try (StageTimings timings = StageTimings.open(listener)) {
+ *     Mat gray = StageTimings.time("gray", () -> OpencvUtil.gray(image));
+ *     ...
+ * }
+ * </pre>
+ *
+ * Opening timings while others are open on the thread joins them, the listener is called once when the outermost is closed.
+ * Outside of open timings {@link #time(String, Supplier)} only runs the stage.
+ */
+public final class StageTimings implements AutoCloseable {
+
+    private static final ThreadLocal<StageTimings> CURRENT = new ThreadLocal<>();
+
+    private final Consumer<StageTimings> listener;
+    private final Map<String, Long> stages = new LinkedHashMap<>();
+    private String format = "unknown";
+    private String language;
+    private long pixels;
+    private long bytes;
+    private int depth = 1;
+
+    private StageTimings(Consumer<StageTimings> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Open timings on the current thread
+     * @param listener called with the collected timings when they are closed
+     * @return
+     */
+    public static StageTimings open(Consumer<StageTimings> listener) {
+        StageTimings current = CURRENT.get();
+        if (current != null) {
+            current.depth++;
+            return current;
+        }
+        StageTimings timings = new StageTimings(listener);
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    /**
+     * Run a stage and add its duration to the open timings of the current thread
+     * @param stage
+     * @param work
+     * @return the result of the stage
+     */
+    public static <T> T time(String stage, Supplier<T> work) {
+        StageTimings timings = CURRENT.get();
+        if (timings == null) {
+            return work.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            timings.add(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Add the duration of a stage that was measured by the caller
+     * @param stage
+     * @param nanos
+     */
+    public void add(String stage, long nanos) {
+        stages.merge(stage, nanos, Long::sum);
+    }
+
+    /**
+     * Input format of the image, such as png or jpeg
+     */
+    public static void format(String format) {
+        StageTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.format = format;
+        }
+    }
+
+    /**
+     * Language the image is recognized in
+     */
+    public static void language(String language) {
+        StageTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.language = language;
+        }
+    }
+
+    /**
+     * Pixel count of the image as it was sent
+     */
+    public static void pixels(long pixels) {
+        StageTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.pixels = pixels;
+        }
+    }
+
+    /**
+     * Size of the encoded image
+     */
+    public static void bytes(long bytes) {
+        StageTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.bytes = bytes;
+        }
+    }
+
+    /**
+     * Nanoseconds spent per stage in the order the stages first ran
+     * @return
+     */
+    public Map<String, Long> getStages() {
+        return Collections.unmodifiableMap(stages);
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the language, null when it was not set
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    public long getPixels() {
+        return pixels;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        if (--depth > 0) {
+            return;
+        }
+        CURRENT.remove();
+        listener.accept(this);
+    }
+}
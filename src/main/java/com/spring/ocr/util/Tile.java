@@ -0,0 +1,45 @@
+package com.spring.ocr.util;
+
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A horizontal band of an image that is recognized on its own.
+ * Neighbouring tiles overlap unless they were cut along a blank row, every row is owned by exactly one tile
+ * so text recognized in an overlap is kept only once.
+ */
+@Value
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class Tile {
+
+    /**
+     * First row of the band
+     */
+    int top;
+
+    /**
+     * Row after the last row of the band
+     */
+    int bottom;
+
+    /**
+     * First row owned by this tile
+     */
+    int ownTop;
+
+    /**
+     * Row after the last row owned by this tile
+     */
+    int ownBottom;
+
+    /**
+     * Whether a line found at the given row offset inside the band belongs to this tile
+     * @param row
+     * @return
+     */
+    public boolean owns(int row) {
+        int y = top + row;
+        return y >= ownTop && y < ownBottom;
+    }
+}
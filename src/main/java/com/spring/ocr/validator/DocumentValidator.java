@@ -0,0 +1,28 @@
+package com.spring.ocr.validator;
+
+import com.spring.ocr.document.DocumentFormat;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Accepts PDF, TIFF, PNG and JPEG uploads recognized by their magic bytes, the client supplied content type is not trusted.
+ * The dimensions of the pages are checked against {@link ImageLimits} when the document is opened, before any page is rendered.
+ */
+public class DocumentValidator implements ConstraintValidator<ValidDocument, MultipartFile> {
+
+    @Override
+    public boolean isValid(MultipartFile multipartFile, ConstraintValidatorContext context) {
+        if (multipartFile == null) {
+            return true;
+        }
+        try (InputStream in = multipartFile.getInputStream()) {
+            return DocumentFormat.read(in) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
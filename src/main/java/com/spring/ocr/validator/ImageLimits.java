@@ -0,0 +1,57 @@
+package com.spring.ocr.validator;
+
+import com.spring.ocr.error.PayloadTooLargeException;
+import com.spring.ocr.error.UnsupportedImageException;
+import com.spring.ocr.util.ImageHeader;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Limits checked against the header of an image before it is decoded,
+ * so a small file that declares huge dimensions is rejected before it allocates any pixel memory.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ImageLimits {
+
+    long maxPixels;
+    int maxDimension;
+
+    public ImageLimits(Environment environment) {
+        this.maxPixels = environment.getProperty("ocr.image.max-pixels", Long.class, 100_000_000L);
+        this.maxDimension = environment.getProperty("ocr.image.max-dimension", Integer.class, 20_000);
+    }
+
+    /**
+     * Read the header of an encoded image and check it against the limits
+     * @param image encoded image between position and limit, the buffer position is not changed
+     * @return the header of the PNG or JPEG image
+     * @throws UnsupportedImageException when the image is not a PNG or JPEG or its header is broken
+     * @throws PayloadTooLargeException when the image decodes to more pixels than allowed
+     */
+    public ImageHeader check(ByteBuffer image) {
+        ImageHeader header = ImageHeader.read(image);
+        if (header == null || header.getWidth() <= 0 || header.getHeight() <= 0
+                || header.getChannels() < 1 || header.getChannels() > 4) {
+            throw new UnsupportedImageException("PNG or JPG images are allowed");
+        }
+        check(header.getWidth(), header.getHeight());
+        return header;
+    }
+
+    /**
+     * Check the dimensions an image or page decodes to
+     * @param width
+     * @param height
+     */
+    public void check(long width, long height) {
+        if (width > maxDimension || height > maxDimension || width * height > maxPixels) {
+            throw new PayloadTooLargeException("Image of " + width + "x" + height + " pixels is larger than "
+                    + maxDimension + " pixels per side or " + maxPixels + " pixels in total");
+        }
+    }
+}
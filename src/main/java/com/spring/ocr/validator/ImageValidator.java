@@ -1,12 +1,22 @@
 package com.spring.ocr.validator;
 
+import com.spring.ocr.util.ImageHeader;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
-
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Accepts PNG and JPEG uploads recognized by their magic bytes, the client supplied content type is not trusted.
+ * The dimensions are checked against {@link ImageLimits} once the upload is read, before it is decoded.
+ */
 public class ImageValidator implements ConstraintValidator<ValidImage, MultipartFile> {
 
+    private static final int MAGIC_BYTES = 8;
+
     @Override
     public void initialize(ValidImage constraintAnnotation) {
 
@@ -14,20 +24,13 @@ public class ImageValidator implements ConstraintValidator<ValidImage, Multipart
 
     @Override
     public boolean isValid(MultipartFile multipartFile, ConstraintValidatorContext context) {
-
-        boolean result = true;
-
-        String contentType = multipartFile.getContentType();
-        if (!isSupportedContentType(contentType)) {
-            result = false;
+        if (multipartFile == null) {
+            return true;
+        }
+        try (InputStream in = multipartFile.getInputStream()) {
+            return ImageHeader.format(ByteBuffer.wrap(in.readNBytes(MAGIC_BYTES))) != null;
+        } catch (IOException e) {
+            return false;
         }
-
-        return result;
-    }
-
-    private boolean isSupportedContentType(String contentType) {
-        return contentType.equals("image/png")
-                || contentType.equals("image/jpg")
-                || contentType.equals("image/jpeg");
     }
-}
\ No newline at end of file
+}
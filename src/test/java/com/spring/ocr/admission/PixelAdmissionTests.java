@@ -0,0 +1,128 @@
+package com.spring.ocr.admission;
+
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.error.TooManyRequestsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class PixelAdmissionTests {
+
+    final MockEnvironment environment = new MockEnvironment()
+            .withProperty("ocr.admission.max-pixels", "100");
+    final MeterRegistry registry = new SimpleMeterRegistry();
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @BeforeEach
+    void setUp() {
+        environment.setConversionService(new ApplicationConversionService());
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void imageIsRejectedWhenTheQueueIsFull() {
+        PixelAdmission admission = admission(0, Duration.ofSeconds(5));
+        admission.admit(100);
+
+        assertThatThrownBy(() -> admission.admit(1)).isInstanceOf(TooManyRequestsException.class);
+        assertThat(rejected("queue-full")).isEqualTo(1);
+    }
+
+    @Test
+    void imageIsRejectedWhenItWaitsTooLong() {
+        PixelAdmission admission = admission(1, Duration.ofMillis(100));
+        admission.admit(60);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> admission.admit(60)).isInstanceOf(TooManyRequestsException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+        assertThat(rejected("timeout")).isEqualTo(1);
+        assertThat(registry.get("ocr.admission.queue").gauge().value()).isZero();
+    }
+
+    @Test
+    void retryAfterCoversTheImagesWaitingAhead() throws Exception {
+        PixelAdmission admission = admission(1, Duration.ofSeconds(5));
+        PixelAdmission.Permit held = admission.admit(100);
+        Future<PixelAdmission.Permit> waiting = executor.submit(() -> admission.admit(100));
+        awaitQueue(1);
+
+        // Nothing has been processed yet, so the capacity is assumed to turn over once a second:
+        // the waiting image and the rejected one take two turns
+        assertThatThrownBy(() -> admission.admit(100))
+                .isInstanceOf(TooManyRequestsException.class)
+                .satisfies(e -> assertThat(((TooManyRequestsException) e).getRetryAfter()).isEqualTo(Duration.ofSeconds(2)));
+
+        held.close();
+        waiting.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    void acceptedWorkWaitsPastTheMaxWait() throws Exception {
+        PixelAdmission admission = admission(0, Duration.ofMillis(100));
+        PixelAdmission.Permit held = admission.admit(100);
+        Future<PixelAdmission.Permit> waiting = executor.submit(() -> admission.await(100));
+
+        Thread.sleep(300);
+        assertThat(waiting).isNotDone();
+        held.close();
+
+        waiting.get(5, TimeUnit.SECONDS).close();
+        assertThat(inUse()).isZero();
+        assertThat(rejected("queue-full") + rejected("timeout")).isZero();
+    }
+
+    @Test
+    void closedPermitReleasesItsPixelsOnce() {
+        PixelAdmission admission = admission(0, Duration.ofSeconds(5));
+        PixelAdmission.Permit permit = admission.admit(100);
+        assertThat(inUse()).isEqualTo(100);
+
+        permit.close();
+        permit.close();
+
+        assertThat(inUse()).isZero();
+        admission.admit(100);
+        assertThat(inUse()).isEqualTo(100);
+    }
+
+    private PixelAdmission admission(int queueSize, Duration maxWait) {
+        environment.setProperty("ocr.admission.queue-size", String.valueOf(queueSize));
+        environment.setProperty("ocr.admission.max-wait", maxWait.toString());
+        return new PixelAdmission(environment, mock(TesseractEnginePool.class), registry);
+    }
+
+    private double rejected(String reason) {
+        return registry.get("ocr.admission.rejected").tag("reason", reason).counter().count();
+    }
+
+    private double inUse() {
+        return registry.get("ocr.admission.in-use").gauge().value();
+    }
+
+    private void awaitQueue(int images) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("ocr.admission.queue").gauge().value() < images && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(registry.get("ocr.admission.queue").gauge().value()).isEqualTo(images);
+    }
+}
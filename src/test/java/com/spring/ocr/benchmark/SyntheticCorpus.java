@@ -0,0 +1,73 @@
+package com.spring.ocr.benchmark;
+
+import lombok.experimental.UtilityClass;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Random;
+
+/**
+ * Deterministic scanned-page look-alikes, so benchmark runs are comparable across machines and commits
+ */
+@UtilityClass
+public class SyntheticCorpus {
+
+    private static final String[] WORDS = {
+            "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do",
+            "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua", "2021"
+    };
+
+    /**
+     * A slightly tinted color page with about 40 lines of text and salt and pepper noise
+     * @param resolution width x height, such as 1920x1080
+     * @param seed
+     * @return BGR image
+     */
+    public Mat page(String resolution, long seed) {
+        String[] size = resolution.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        Random random = new Random(seed);
+
+        Mat page = new Mat(height, width, CvType.CV_8UC3, new Scalar(235, 240, 245));
+        int lineHeight = Math.max(12, height / 40);
+        double fontScale = lineHeight / 40.0;
+        int thickness = Math.max(1, lineHeight / 12);
+        for (int y = lineHeight; y < height - lineHeight / 2; y += lineHeight) {
+            StringBuilder line = new StringBuilder();
+            while (line.length() * lineHeight * 0.45 < width - 2 * lineHeight) {
+                line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            Imgproc.putText(page, line.toString(), new Point(lineHeight, y), Imgproc.FONT_HERSHEY_SIMPLEX,
+                    fontScale, new Scalar(30, 30, 30), thickness);
+        }
+
+        byte[] pixels = new byte[(int) (page.total() * page.channels())];
+        page.get(0, 0, pixels);
+        for (int i = 0; i < pixels.length / 1000; i++) {
+            int pixel = random.nextInt((int) page.total()) * 3;
+            byte value = random.nextBoolean() ? 0 : (byte) 255;
+            pixels[pixel] = value;
+            pixels[pixel + 1] = value;
+            pixels[pixel + 2] = value;
+        }
+        page.put(0, 0, pixels);
+        return page;
+    }
+
+    /**
+     * Encode an image, such as ".png" or ".jpg"
+     */
+    public byte[] encode(Mat mat, String extension) {
+        MatOfByte encoded = new MatOfByte();
+        Imgcodecs.imencode(extension, mat, encoded);
+        byte[] bytes = encoded.toArray();
+        encoded.release();
+        return bytes;
+    }
+}
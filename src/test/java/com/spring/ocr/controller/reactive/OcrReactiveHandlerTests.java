@@ -0,0 +1,66 @@
+package com.spring.ocr.controller.reactive;
+
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.error.ExceptionTranslator;
+import com.spring.ocr.metrics.OcrMetrics;
+import com.spring.ocr.preprocess.PreprocessProfiles;
+import com.spring.ocr.service.OcrService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class OcrReactiveHandlerTests {
+
+    static final byte[] NOT_AN_IMAGE = "<html><body>not an image</body></html>".getBytes(StandardCharsets.US_ASCII);
+
+    final OcrService ocrService = mock(OcrService.class);
+
+    WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("problem.default.type", "https://www.spring.test/problem/problem-with-message")
+                .withProperty("problem.path.key", "path")
+                .withProperty("problem.message.key", "message");
+        OcrReactiveHandler handler = new OcrReactiveHandler(ocrService, mock(PreprocessProfiles.class), mock(TesseractEnginePool.class),
+                mock(OcrMetrics.class), new ExceptionTranslator(environment), environment);
+        client = WebTestClient.bindToRouterFunction(handler.routes()).build();
+    }
+
+    @Test
+    void partDeclaredAsPngIsRejectedFromItsContent() {
+        MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.part("file", NOT_AN_IMAGE).filename("page.png").contentType(MediaType.IMAGE_PNG);
+
+        client.post().uri("/versions/1/images/extract")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(body.build()))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(ocrService, never()).submitImage(any(), any(), any());
+    }
+
+    @Test
+    void bodyDeclaredAsPngIsRejectedFromItsContent() {
+        client.post().uri("/versions/1/images/extract")
+                .contentType(MediaType.IMAGE_PNG)
+                .bodyValue(NOT_AN_IMAGE)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(ocrService, never()).submitImage(any(), any(), any());
+    }
+}
@@ -0,0 +1,152 @@
+package com.spring.ocr.controller.rest;
+
+import com.spring.ocr.engine.RecognizedText;
+import com.spring.ocr.engine.TextLine;
+import com.spring.ocr.engine.TextRecognizer;
+import com.spring.ocr.engine.TextWord;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class OcrControllerTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    TextRecognizer textRecognizer;
+
+    @Test
+    void batchReportsABrokenImageAsItsOwnFailure() throws Exception {
+        when(textRecognizer.recognize(any(), anyString())).thenReturn("text");
+        // Starts like a PNG, so it passes validation, but its header is cut off
+        byte[] broken = Arrays.copyOf(png(20, 20), 12);
+
+        MvcResult result = mockMvc.perform(multipart("/versions/1/images/extract/batch")
+                        .file(new MockMultipartFile("files", "first.png", "image/png", png(30, 40)))
+                        .file(new MockMultipartFile("files", "broken.png", "image/png", broken))
+                        .file(new MockMultipartFile("files", "third.png", "image/png", png(40, 30)))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].fileName").value("first.png"))
+                .andExpect(jsonPath("$[0].text").value("text"))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].fileName").value("broken.png"))
+                .andExpect(jsonPath("$[1].text").doesNotExist())
+                .andExpect(jsonPath("$[1].error").value("PNG or JPG images are allowed"))
+                .andExpect(jsonPath("$[2].fileName").value("third.png"))
+                .andExpect(jsonPath("$[2].text").value("text"));
+    }
+
+    @Test
+    void layoutBoxesAreReportedInTheUploadedImage() throws Exception {
+        // The engine reports the dark area of the image it is given, which is shrunk and straightened
+        when(textRecognizer.recognizeLayout(any(), anyString())).thenAnswer(invocation -> {
+            Mat mat = invocation.getArgument(0);
+            Mat dark = new Mat();
+            Imgproc.threshold(mat, dark, 128, 255, Imgproc.THRESH_BINARY_INV);
+            Mat points = new Mat();
+            Core.findNonZero(dark, points);
+            Rect box = Imgproc.boundingRect(points);
+            TextWord word = new TextWord("text", box.x, box.y, box.width, box.height, 90);
+            return new RecognizedText("text\n", Collections.singletonList(
+                    new TextLine("text", box.x, box.y, box.width, box.height, true, 90, Collections.singletonList(word))));
+        });
+        // Glyphs 80 pixels high are shrunk to the target text height, the page is turned by 3 degrees
+        Mat page = new Mat(1400, 2000, CvType.CV_8UC1, new Scalar(255));
+        for (int y = 300; y < 700; y += 140) {
+            for (int x = 200; x < 1800; x += 50) {
+                Imgproc.rectangle(page, new Point(x, y), new Point(x + 29, y + 79), new Scalar(0), Imgproc.FILLED);
+            }
+        }
+        Mat rotation = Imgproc.getRotationMatrix2D(new Point(1000, 700), 3, 1);
+        Mat skewed = new Mat();
+        Imgproc.warpAffine(page, skewed, rotation, page.size(), Imgproc.INTER_LINEAR, Core.BORDER_CONSTANT, new Scalar(255));
+        double[] text = boundingBox(rotation, 200, 300, 1780, 660);
+
+        MvcResult result = mockMvc.perform(multipart("/versions/1/images/extract")
+                        .file(new MockMultipartFile("file", "skewed.png", "image/png", encode(skewed)))
+                        .param("profile", "default")
+                        .param("layout", "true")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lines", hasSize(1)))
+                .andExpect(jsonPath("$.lines[0].box[0]").value(closeTo(text[0], 8), Double.class))
+                .andExpect(jsonPath("$.lines[0].box[1]").value(closeTo(text[1], 8), Double.class))
+                .andExpect(jsonPath("$.lines[0].box[2]").value(closeTo(text[2], 8), Double.class))
+                .andExpect(jsonPath("$.lines[0].box[3]").value(closeTo(text[3], 8), Double.class))
+                .andExpect(jsonPath("$.lines[0].words[0].box[0]").value(closeTo(text[0], 8), Double.class))
+                .andExpect(jsonPath("$.lines[0].words[0].box[3]").value(closeTo(text[3], 8), Double.class));
+    }
+
+    /**
+     * Left, top, width and height of the rectangle from (left, top) to (right, bottom) once it is rotated
+     */
+    private static double[] boundingBox(Mat rotation, double left, double top, double right, double bottom) {
+        double[] m = new double[6];
+        rotation.get(0, 0, m);
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (double[] corner : new double[][]{{left, top}, {right, top}, {left, bottom}, {right, bottom}}) {
+            double x = m[0] * corner[0] + m[1] * corner[1] + m[2];
+            double y = m[3] * corner[0] + m[4] * corner[1] + m[5];
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        return new double[]{minX, minY, maxX - minX, maxY - minY};
+    }
+
+    private static byte[] png(int rows, int cols) {
+        return encode(new Mat(rows, cols, CvType.CV_8UC1, new Scalar(255)));
+    }
+
+    private static byte[] encode(Mat image) {
+        MatOfByte encoded = new MatOfByte();
+        Imgcodecs.imencode(".png", image, encoded);
+        return encoded.toArray();
+    }
+}
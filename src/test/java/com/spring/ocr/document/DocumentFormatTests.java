@@ -0,0 +1,39 @@
+package com.spring.ocr.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentFormatTests {
+
+    @Test
+    void recognizesPdf() throws IOException {
+        assertThat(DocumentFormat.read(new ByteArrayInputStream("%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII))))
+                .isEqualTo(DocumentFormat.PDF);
+    }
+
+    @Test
+    void recognizesTiffOfBothByteOrders() {
+        assertThat(DocumentFormat.detect(ByteBuffer.wrap(new byte[]{'I', 'I', 42, 0, 8, 0, 0, 0}))).isEqualTo(DocumentFormat.TIFF);
+        assertThat(DocumentFormat.detect(ByteBuffer.wrap(new byte[]{'M', 'M', 0, 42, 0, 0, 0, 8}))).isEqualTo(DocumentFormat.TIFF);
+    }
+
+    @Test
+    void recognizesImages() {
+        assertThat(DocumentFormat.detect(ByteBuffer.wrap(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})))
+                .isEqualTo(DocumentFormat.PNG);
+        assertThat(DocumentFormat.detect(ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0})))
+                .isEqualTo(DocumentFormat.JPEG);
+    }
+
+    @Test
+    void rejectsAnythingElse() throws IOException {
+        assertThat(DocumentFormat.read(new ByteArrayInputStream("<html>".getBytes(StandardCharsets.US_ASCII)))).isNull();
+        assertThat(DocumentFormat.read(new ByteArrayInputStream(new byte[0]))).isNull();
+    }
+}
@@ -0,0 +1,205 @@
+package com.spring.ocr.engine;
+
+import com.spring.ocr.error.OcrEngineUnavailableException;
+import com.spring.ocr.error.TooManyLanguagesException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TesseractEnginePoolTests {
+
+    @TempDir
+    Path tessdata;
+
+    TesseractEnginePool pool;
+
+    @AfterEach
+    void closePool() {
+        pool.close();
+    }
+
+    @Test
+    void borrowTimesOutWhenEveryEngineIsBusy() throws Exception {
+        pool = pool(1, Duration.ofMillis(100));
+        CountDownLatch borrowed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> busy = executor.submit(() -> pool.execute("eng", engine -> {
+                borrowed.countDown();
+                return await(release);
+            }));
+            assertThat(borrowed.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> pool.execute("eng", engine -> engine))
+                    .isInstanceOf(OcrEngineUnavailableException.class);
+
+            release.countDown();
+            busy.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void engineIsReplacedAfterAnEngineError() {
+        pool = pool(1, Duration.ofSeconds(1));
+        TesseractEngine first = pool.execute("eng", engine -> engine);
+
+        assertThatThrownBy(() -> pool.execute("eng", engine -> {
+            throw new TesseractEngineException("Tesseract could not recognize the image");
+        })).isInstanceOf(TesseractEngineException.class);
+
+        TesseractEngine next = pool.execute("eng", engine -> engine);
+        assertThat(next).isNotSameAs(first);
+        verify(first).close();
+    }
+
+    @Test
+    void engineIsKeptWhenTheWorkItselfFails() {
+        pool = pool(1, Duration.ofSeconds(1));
+        TesseractEngine first = pool.execute("eng", engine -> engine);
+
+        assertThatThrownBy(() -> pool.execute("eng", engine -> {
+            throw new IllegalArgumentException("Not an engine error");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        TesseractEngine next = pool.execute("eng", engine -> engine);
+        assertThat(next).isSameAs(first);
+        verify(first, never()).close();
+    }
+
+    @Test
+    void prestartNeverCreatesMoreEnginesThanThePoolSize() throws Exception {
+        pool = pool(2, Duration.ofSeconds(1), Set.of("eng", "deu", "tur"));
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pool.bindTo(registry);
+
+        pool.prestart().get(5, TimeUnit.SECONDS);
+
+        assertThat(registry.get("tesseract.pool.idle").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void prestartedEnginesAreNotCountedAsMisses() throws Exception {
+        pool = pool(2, Duration.ofSeconds(1), Set.of("eng"));
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pool.bindTo(registry);
+        pool.prestart().get(5, TimeUnit.SECONDS);
+
+        pool.execute("eng", engine -> engine);
+
+        assertThat(registry.get("tesseract.pool.language.hit.ratio").tag("language", "eng").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void borrowThatCreatesAnEngineIsAMiss() {
+        pool = pool(2, Duration.ofSeconds(1), Set.of());
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pool.bindTo(registry);
+
+        pool.execute("eng", engine -> engine);
+        pool.execute("eng", engine -> engine);
+
+        assertThat(registry.get("tesseract.pool.language.hit.ratio").tag("language", "eng").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    void metersOfPreloadedLanguagesAreRegisteredBeforeFirstUse() {
+        pool = pool(2, Duration.ofSeconds(1), Set.of("eng", "deu"));
+        MeterRegistry registry = new SimpleMeterRegistry();
+
+        pool.bindTo(registry);
+
+        assertThat(registry.find("tesseract.pool.language.borrowed").tag("language", "deu").functionCounter()).isNotNull();
+        assertThat(registry.find("tesseract.pool.language.hit.ratio").tag("language", "eng").gauge()).isNotNull();
+    }
+
+    @Test
+    void combinedLanguagesShareOneCanonicalKey() throws IOException {
+        install("eng", "deu", "tur");
+        pool = pool(2, Duration.ofSeconds(1), Set.of("eng"));
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pool.bindTo(registry);
+
+        assertThat(pool.language("eng+deu")).isEqualTo("deu+eng");
+        assertThat(pool.language("deu+eng+eng+deu")).isEqualTo("deu+eng");
+        pool.execute(pool.language("eng+deu"), engine -> engine);
+        pool.execute(pool.language("deu+eng"), engine -> engine);
+
+        assertThat(registry.get("tesseract.pool.language.borrowed").functionCounters())
+                .extracting(counter -> counter.getId().getTag("language"))
+                .containsExactlyInAnyOrder("eng", "deu+eng");
+        assertThat(registry.get("tesseract.pool.created").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void tooManyCombinedLanguagesAreRejected() throws IOException {
+        install("eng", "deu", "tur", "fra");
+        pool = pool(1, Duration.ofSeconds(1));
+
+        assertThat(pool.language("tur+eng+deu")).isEqualTo("deu+eng+tur");
+        assertThatThrownBy(() -> pool.language("tur+eng+deu+fra")).isInstanceOf(TooManyLanguagesException.class);
+    }
+
+    private void install(String... languages) throws IOException {
+        for (String language : languages) {
+            Files.createFile(tessdata.resolve(language + ".traineddata"));
+        }
+    }
+
+    private TesseractEnginePool pool(int size, Duration borrowTimeout) {
+        return pool(size, borrowTimeout, Set.of("eng"));
+    }
+
+    private TesseractEnginePool pool(int size, Duration borrowTimeout, Set<String> preloadedLanguages) {
+        return new TesseractEnginePool(new StubEngineFactory(tessdata), size, borrowTimeout, Duration.ZERO, "eng", 3, preloadedLanguages);
+    }
+
+    private static Object await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hands out mock engines, so the pool is tested without the native tesseract library
+     */
+    static class StubEngineFactory extends TesseractEngineFactory {
+
+        StubEngineFactory(Path dataPath) {
+            super(dataPath.toString(), Map.of());
+        }
+
+        @Override
+        protected TesseractEngine load(String language) {
+            TesseractEngine engine = mock(TesseractEngine.class);
+            when(engine.getLanguage()).thenReturn(language);
+            return engine;
+        }
+    }
+}
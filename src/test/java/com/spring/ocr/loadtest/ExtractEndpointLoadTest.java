@@ -0,0 +1,248 @@
+package com.spring.ocr.loadtest;
+
+import com.spring.ocr.benchmark.SyntheticCorpus;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Drives {@code POST /versions/1/images/extract} of the application started in-process with the local tessdata.
+ * A fixed number of users send images from a weighted mix back to back, first for a warmup and then for the measured duration.
+ * Latencies of successful requests go into an HDR histogram written to {@code target/load-test},
+ * the test fails when a configured budget is exceeded.
+ *
+ * <pre>
+ * ./mvnw -Pload-test verify -Dloadtest.concurrency=16 -Dloadtest.duration=PT2M -Dloadtest.budget.p99-ms=4000
+ * </pre>
+ *
+ * Every user waits for its response before sending the next request, so latencies do not include time
+ * a request would have waited at a fixed arrival rate. Compare runs with the same concurrency.
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "ocr.cache.enabled=${loadtest.cache-enabled:false}")
+class ExtractEndpointLoadTest {
+
+    private static final String BOUNDARY = "----load-test-boundary";
+
+    @LocalServerPort
+    int port;
+
+    @Value("${server.servlet.context-path}")
+    String contextPath;
+
+    @Test
+    void extractStaysWithinBudget() throws Exception {
+        int concurrency = Integer.getInteger("loadtest.concurrency", Runtime.getRuntime().availableProcessors());
+        Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT10S"));
+        Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+        boolean raw = "raw".equals(System.getProperty("loadtest.body", "multipart"));
+        List<Image> images = images();
+
+        URI uri = URI.create("http://localhost:" + port + contextPath + "/versions/1/images/extract");
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        run(client, uri, images, raw, concurrency, warmup, new Result());
+        Result result = new Result();
+        run(client, uri, images, raw, concurrency, duration, result);
+
+        Histogram histogram = result.latencies.getIntervalHistogram();
+        double seconds = duration.toMillis() / 1000.0;
+        double throughput = histogram.getTotalCount() / seconds;
+        long requests = histogram.getTotalCount() + result.rejected.get() + result.failed.get();
+        double errorRate = requests == 0 ? 1 : (double) result.failed.get() / requests;
+        double rejectRate = requests == 0 ? 1 : (double) result.rejected.get() / requests;
+        report(histogram, concurrency, duration, throughput, result);
+
+        SoftAssertions budget = new SoftAssertions();
+        // Percentiles of an empty histogram are 0, a run without a single answered request must not pass the latency budgets
+        budget.assertThat(histogram.getTotalCount()).as("successful requests").isPositive();
+        budget.assertThat(errorRate).as("error rate").isLessThanOrEqualTo(Double.parseDouble(System.getProperty("loadtest.budget.max-error-rate", "0.01")));
+        budget.assertThat(rejectRate).as("reject rate").isLessThanOrEqualTo(Double.parseDouble(System.getProperty("loadtest.budget.max-reject-rate", "0.05")));
+        budgetMillis(budget, histogram, "p50", 50);
+        budgetMillis(budget, histogram, "p95", 95);
+        budgetMillis(budget, histogram, "p99", 99);
+        String minThroughput = System.getProperty("loadtest.budget.min-throughput");
+        if (minThroughput != null) {
+            budget.assertThat(throughput).as("requests per second").isGreaterThanOrEqualTo(Double.parseDouble(minThroughput));
+        }
+        budget.assertAll();
+    }
+
+    private void run(HttpClient client, URI uri, List<Image> images, boolean raw, int concurrency, Duration duration,
+                     Result result) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        int totalWeight = images.stream().mapToInt(Image::getWeight).sum();
+        ExecutorService users = Executors.newFixedThreadPool(concurrency);
+        for (int user = 0; user < concurrency; user++) {
+            Random random = new Random(user);
+            users.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    send(client, uri, pick(images, random.nextInt(totalWeight)), raw, result);
+                }
+            });
+        }
+        users.shutdown();
+        users.awaitTermination(duration.toMillis() + TimeUnit.MINUTES.toMillis(5), TimeUnit.MILLISECONDS);
+    }
+
+    private void send(HttpClient client, URI uri, Image image, boolean raw, Result result) {
+        HttpRequest request = (raw
+                ? HttpRequest.newBuilder(URI.create(uri + "?fileName=" + image.getName()))
+                        .header("Content-Type", image.getContentType())
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(image.getBytes()))
+                : HttpRequest.newBuilder(uri)
+                        .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(image.getMultipart())))
+                .timeout(Duration.ofMinutes(2))
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            if (response.statusCode() == 200) {
+                result.latencies.recordValue(micros);
+            } else if (response.statusCode() == 429 || response.statusCode() == 503) {
+                result.rejected.incrementAndGet();
+            } else {
+                result.failed.incrementAndGet();
+            }
+        } catch (IOException e) {
+            result.failed.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Image pick(List<Image> images, int point) {
+        for (Image image : images) {
+            point -= image.getWeight();
+            if (point < 0) {
+                return image;
+            }
+        }
+        return images.get(images.size() - 1);
+    }
+
+    private static void budgetMillis(SoftAssertions budget, Histogram histogram, String name, double percentile) {
+        String limit = System.getProperty("loadtest.budget." + name + "-ms");
+        if (limit != null) {
+            budget.assertThat(histogram.getValueAtPercentile(percentile) / 1000.0).as(name + " latency in ms")
+                    .isLessThanOrEqualTo(Double.parseDouble(limit));
+        }
+    }
+
+    private static void report(Histogram histogram, int concurrency, Duration duration, double throughput, Result result) throws IOException {
+        Path directory = Paths.get("target", "load-test");
+        Files.createDirectories(directory);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve("extract-latency.hgrm")), true, StandardCharsets.UTF_8.name())) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+        String summary = String.format(Locale.ROOT,
+                "concurrency=%d duration=%s ok=%d rejected=%d failed=%d throughput=%.2f req/s%n"
+                        + "latency ms: p50=%.1f p95=%.1f p99=%.1f max=%.1f%n",
+                concurrency, duration, histogram.getTotalCount(), result.rejected.get(), result.failed.get(), throughput,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(95) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0, histogram.getMaxValue() / 1000.0);
+        Files.write(directory.resolve("extract-summary.txt"), summary.getBytes(StandardCharsets.UTF_8));
+        log.info("Load test finished\n{}", summary.trim());
+    }
+
+    /**
+     * Images from {@code loadtest.corpus-dir} when set, otherwise synthetic pages from
+     * {@code loadtest.images}: resolution:weight pairs such as 640x480:1,1920x1080:2
+     */
+    private static List<Image> images() throws IOException {
+        String corpus = System.getProperty("loadtest.corpus-dir");
+        if (corpus != null) {
+            try (Stream<Path> files = Files.list(Paths.get(corpus))) {
+                List<Image> images = new ArrayList<>();
+                for (Path file : files.filter(ExtractEndpointLoadTest::isImage).sorted().collect(Collectors.toList())) {
+                    images.add(new Image(file.getFileName().toString(), Files.readAllBytes(file), 1));
+                }
+                return images;
+            }
+        }
+        List<Image> images = new ArrayList<>();
+        for (String entry : System.getProperty("loadtest.images", "640x480:1,1920x1080:2,4000x3000:1").split(",")) {
+            String[] mix = entry.trim().split(":");
+            Mat page = SyntheticCorpus.page(mix[0], images.size());
+            images.add(new Image(mix[0] + ".png", SyntheticCorpus.encode(page, ".png"), mix.length > 1 ? Integer.parseInt(mix[1]) : 1));
+            page.release();
+        }
+        return images;
+    }
+
+    private static boolean isImage(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg");
+    }
+
+    private static class Result {
+        final Recorder latencies = new Recorder(3);
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+    }
+
+    @Getter
+    private static class Image {
+        final String name;
+        final byte[] bytes;
+        final int weight;
+        final byte[] multipart;
+
+        Image(String name, byte[] bytes, int weight) {
+            this.name = name;
+            this.bytes = bytes;
+            this.weight = weight;
+            this.multipart = multipart(name, getContentType(), bytes);
+        }
+
+        String getContentType() {
+            return name.toLowerCase(Locale.ROOT).endsWith(".png") ? "image/png" : "image/jpeg";
+        }
+
+        private static byte[] multipart(String name, String contentType, byte[] bytes) {
+            byte[] head = ("--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"" + name + "\"\r\n"
+                    + "Content-Type: " + contentType + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+            byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+            byte[] body = new byte[head.length + bytes.length + tail.length];
+            System.arraycopy(head, 0, body, 0, head.length);
+            System.arraycopy(bytes, 0, body, head.length, bytes.length);
+            System.arraycopy(tail, 0, body, head.length + bytes.length, tail.length);
+            return body;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.spring.ocr.preprocess;
+
+import com.spring.ocr.metrics.OcrMetrics;
+import com.spring.ocr.util.OpencvUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PreprocessProfilesTests {
+
+    final MockEnvironment environment = new MockEnvironment();
+
+    PreprocessProfiles profiles;
+
+    @BeforeAll
+    static void loadOpenCv() {
+        OpenCV.loadShared();
+    }
+
+    @BeforeEach
+    void setUp() {
+        environment.setConversionService(new ApplicationConversionService());
+        environment.setProperty("ocr.preprocess.profiles.fast", "gray");
+        environment.setProperty("ocr.preprocess.profiles.default", "gray,deskew");
+        environment.setProperty("ocr.preprocess.profiles.noisy-scan", "gray,deskew,otsu");
+        profiles = new PreprocessProfiles(environment, new OcrMetrics(new SimpleMeterRegistry(), environment));
+    }
+
+    @Test
+    void deskewUsesTheSkewAlreadyMeasured() {
+        Mat straight = textPage();
+
+        PreprocessedImage measured = profiles.get("default").apply(PreprocessedImage.of(straight).withSkew(5));
+        PreprocessedImage unmeasured = profiles.get("default").apply(PreprocessedImage.of(straight));
+
+        assertThat(measured.getMat().cols()).isGreaterThan(straight.cols());
+        assertThat(measured.getSkew()).isNull();
+        assertThat(unmeasured.getMat().size()).isEqualTo(straight.size());
+    }
+
+    @Test
+    void autoProfileStraightensWithTheTriageSkew() {
+        Mat skewed = new Mat();
+        Imgproc.warpAffine(textPage(), skewed, Imgproc.getRotationMatrix2D(new Point(500, 400), 5, 1), new Size(1000, 800),
+                Imgproc.INTER_LINEAR, Core.BORDER_CONSTANT, new Scalar(255));
+
+        PreprocessedImage deskewed = profiles.get("auto").apply(PreprocessedImage.of(skewed));
+
+        assertThat(deskewed.getMat().cols()).isGreaterThan(skewed.cols());
+        assertThat(OpencvUtil.skewAngle(deskewed.getMat(), deskewed.getMat().total())).isCloseTo(0, within(0.2));
+    }
+
+    private static Mat textPage() {
+        Mat page = new Mat(800, 1000, CvType.CV_8UC1, new Scalar(255));
+        for (int y = 40; y < 780; y += 36) {
+            Imgproc.putText(page, "The quick brown fox jumps over the lazy dog 0123456789", new Point(30, y),
+                    Imgproc.FONT_HERSHEY_SIMPLEX, 0.9, new Scalar(20), 2);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,108 @@
+package com.spring.ocr.service.impl;
+
+import com.spring.ocr.admission.PixelAdmission;
+import com.spring.ocr.document.DocumentPages;
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.engine.TextRecognizer;
+import com.spring.ocr.metrics.OcrMetrics;
+import com.spring.ocr.model.request.OcrOptions;
+import com.spring.ocr.model.response.PageTextDto;
+import com.spring.ocr.preprocess.PreprocessProfiles;
+import com.spring.ocr.preprocess.PreprocessedImage;
+import com.spring.ocr.service.ImageProcessService;
+import com.spring.ocr.validator.ImageLimits;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentOcrServiceImplTests {
+
+    final MockEnvironment environment = new MockEnvironment();
+    final TextRecognizer textRecognizer = mock(TextRecognizer.class);
+    final ImageProcessService imageProcessService = mock(ImageProcessService.class);
+    final TesseractEnginePool tesseractEnginePool = mock(TesseractEnginePool.class);
+    final ThreadPoolTaskExecutor ocrTaskExecutor = new ThreadPoolTaskExecutor();
+    final MeterRegistry registry = new SimpleMeterRegistry();
+
+    PixelAdmission pixelAdmission;
+    DocumentOcrServiceImpl documentOcrService;
+
+    @BeforeAll
+    static void loadOpenCv() {
+        OpenCV.loadShared();
+    }
+
+    @BeforeEach
+    void setUp() {
+        environment.setConversionService(new ApplicationConversionService());
+        when(tesseractEnginePool.getSize()).thenReturn(1);
+        when(tesseractEnginePool.language(any())).thenReturn("eng");
+        when(textRecognizer.recognize(any(), anyString())).thenReturn("text");
+        when(imageProcessService.preprocessImage(any(Mat.class), any())).thenReturn(PreprocessedImage.of(new Mat()));
+        ocrTaskExecutor.initialize();
+        pixelAdmission = spy(new PixelAdmission(environment, tesseractEnginePool, registry));
+        documentOcrService = new DocumentOcrServiceImpl(tesseractEnginePool, textRecognizer, imageProcessService,
+                mock(PreprocessProfiles.class), mock(OcrMetrics.class), new ImageLimits(environment), pixelAdmission,
+                ocrTaskExecutor, environment);
+    }
+
+    @AfterEach
+    void shutdown() {
+        ocrTaskExecutor.shutdown();
+    }
+
+    @Test
+    void everyPageIsAdmittedByItsPixelsAndReleasedWhenDone() throws IOException {
+        DocumentPages pages = pages(3);
+        List<PageTextDto> results = new ArrayList<>();
+
+        documentOcrService.extractTextFromPages("scan.tiff", pages, new OcrOptions(), results::add);
+
+        assertThat(results).extracting(PageTextDto::getText).containsExactly("text", "text", "text");
+        verify(pixelAdmission, times(3)).await(1200);
+        assertThat(registry.get("ocr.admission.in-use").gauge().value()).isZero();
+    }
+
+    @Test
+    void pageThatFailsReleasesItsPixels() throws IOException {
+        when(textRecognizer.recognize(any(), anyString())).thenThrow(new IllegalStateException("Tesseract could not recognize the image"));
+        DocumentPages pages = pages(1);
+        List<PageTextDto> results = new ArrayList<>();
+
+        documentOcrService.extractTextFromPages("scan.tiff", pages, new OcrOptions(), results::add);
+
+        assertThat(results).extracting(PageTextDto::getError).containsExactly("Tesseract could not recognize the image");
+        assertThat(registry.get("ocr.admission.in-use").gauge().value()).isZero();
+    }
+
+    private static DocumentPages pages(int count) throws IOException {
+        DocumentPages pages = mock(DocumentPages.class);
+        when(pages.getPageCount()).thenReturn(count);
+        when(pages.getFormat()).thenReturn("tiff");
+        when(pages.readPage(anyInt())).thenAnswer(invocation -> new BufferedImage(40, 30, BufferedImage.TYPE_BYTE_GRAY));
+        return pages;
+    }
+}
@@ -0,0 +1,128 @@
+package com.spring.ocr.service.impl;
+
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.error.JobNotFoundException;
+import com.spring.ocr.error.TooManyRequestsException;
+import com.spring.ocr.model.request.OcrOptions;
+import com.spring.ocr.model.response.ImageTextDto;
+import com.spring.ocr.model.response.OcrJobDto;
+import com.spring.ocr.model.response.OcrJobStatus;
+import com.spring.ocr.preprocess.PreprocessProfiles;
+import com.spring.ocr.service.ImageProcessService;
+import com.spring.ocr.service.OcrService;
+import com.spring.ocr.validator.ImageLimits;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OcrJobServiceImplTests {
+
+    final OcrService ocrService = mock(OcrService.class);
+    final ImageProcessService imageProcessService = mock(ImageProcessService.class);
+    final MockEnvironment environment = new MockEnvironment();
+    final ThreadPoolTaskExecutor ocrJobExecutor = new ThreadPoolTaskExecutor();
+    final CountDownLatch release = new CountDownLatch(1);
+
+    OcrJobServiceImpl ocrJobService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        environment.setConversionService(new ApplicationConversionService());
+        when(imageProcessService.readImage(any(), anyLong())).thenAnswer(invocation -> ByteBuffer.allocateDirect(80));
+        // Every job waits until the test releases it, so the queue can be filled
+        when(ocrService.extractTextFromImage(anyString(), any(ByteBuffer.class), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return ImageTextDto.builder().fileName(invocation.getArgument(0)).text("text").build();
+        });
+    }
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        ocrJobExecutor.shutdown();
+    }
+
+    @Test
+    void jobIsRejectedWhenTheQueueIsFull() throws Exception {
+        start(0);
+        ocrJobService.submit(file(), new OcrOptions());
+
+        assertThatThrownBy(() -> ocrJobService.submit(file(), new OcrOptions()))
+                .isInstanceOf(TooManyRequestsException.class)
+                .satisfies(e -> assertThat(((TooManyRequestsException) e).getRetryAfter()).isPositive());
+    }
+
+    @Test
+    void jobIsRejectedWhenQueuedImagesExceedTheMaxBytes() throws Exception {
+        environment.setProperty("ocr.jobs.queue-max-bytes", "100B");
+        start(10);
+        OcrJobDto first = ocrJobService.submit(file(), new OcrOptions());
+
+        assertThatThrownBy(() -> ocrJobService.submit(file(), new OcrOptions()))
+                .isInstanceOf(TooManyRequestsException.class);
+
+        release.countDown();
+        awaitDone(first);
+        assertThat(ocrJobService.submit(file(), new OcrOptions()).getStatus()).isEqualTo(OcrJobStatus.QUEUED);
+    }
+
+    @Test
+    void unknownJobIsNotFound() {
+        start(10);
+
+        assertThatThrownBy(() -> ocrJobService.getJob("unknown")).isInstanceOf(JobNotFoundException.class);
+        assertThatThrownBy(() -> ocrJobService.getResult("unknown")).isInstanceOf(JobNotFoundException.class);
+    }
+
+    @Test
+    void finishedJobIsPurgedAfterItsTimeToLive() throws Exception {
+        environment.setProperty("ocr.jobs.result-ttl", "-1s");
+        start(10);
+        release.countDown();
+        OcrJobDto job = ocrJobService.submit(file(), new OcrOptions());
+        awaitDone(job);
+        assertThat(ocrJobService.getResult(job.getId()).getText()).isEqualTo("text");
+
+        ocrJobService.purgeExpiredJobs();
+
+        assertThatThrownBy(() -> ocrJobService.getJob(job.getId())).isInstanceOf(JobNotFoundException.class);
+        assertThatThrownBy(() -> ocrJobService.getResult(job.getId())).isInstanceOf(JobNotFoundException.class);
+    }
+
+    private void start(int queueCapacity) {
+        ocrJobExecutor.setCorePoolSize(1);
+        ocrJobExecutor.setMaxPoolSize(1);
+        ocrJobExecutor.setQueueCapacity(queueCapacity);
+        ocrJobExecutor.initialize();
+        ocrJobService = new OcrJobServiceImpl(ocrService, imageProcessService, mock(PreprocessProfiles.class),
+                mock(TesseractEnginePool.class), mock(ImageLimits.class), ocrJobExecutor, environment);
+    }
+
+    private void awaitDone(OcrJobDto job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ocrJobService.getJob(job.getId()).getStatus() != OcrJobStatus.DONE && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(ocrJobService.getJob(job.getId()).getStatus()).isEqualTo(OcrJobStatus.DONE);
+    }
+
+    private static MockMultipartFile file() {
+        return new MockMultipartFile("file", "page.png", "image/png", new byte[80]);
+    }
+}
@@ -0,0 +1,154 @@
+package com.spring.ocr.service.impl;
+
+import com.spring.ocr.admission.PixelAdmission;
+import com.spring.ocr.cache.OcrResultCache;
+import com.spring.ocr.engine.TesseractEnginePool;
+import com.spring.ocr.engine.TextRecognizer;
+import com.spring.ocr.metrics.OcrMetrics;
+import com.spring.ocr.model.request.OcrOptions;
+import com.spring.ocr.model.response.ImageTextDto;
+import com.spring.ocr.preprocess.PreprocessPipeline;
+import com.spring.ocr.preprocess.PreprocessProfiles;
+import com.spring.ocr.preprocess.PreprocessedImage;
+import com.spring.ocr.service.ImageProcessService;
+import com.spring.ocr.validator.ImageLimits;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OcrServiceImplTests {
+
+    final MockEnvironment environment = new MockEnvironment()
+            .withProperty("ocr.admission.max-wait", "100ms");
+    final TextRecognizer textRecognizer = mock(TextRecognizer.class);
+    final PreprocessProfiles preprocessProfiles = mock(PreprocessProfiles.class);
+    final TesseractEnginePool tesseractEnginePool = mock(TesseractEnginePool.class);
+    final ImageProcessService imageProcessService = mock(ImageProcessService.class);
+    final ThreadPoolTaskExecutor ocrTaskExecutor = new ThreadPoolTaskExecutor();
+    final ThreadPoolTaskExecutor ocrIoExecutor = new ThreadPoolTaskExecutor();
+    final MeterRegistry registry = new SimpleMeterRegistry();
+
+    PixelAdmission pixelAdmission;
+    OcrServiceImpl ocrService;
+
+    @BeforeAll
+    static void loadOpenCv() {
+        OpenCV.loadShared();
+    }
+
+    @BeforeEach
+    void setUp() {
+        environment.setConversionService(new ApplicationConversionService());
+        PreprocessPipeline pipeline = mock(PreprocessPipeline.class);
+        when(pipeline.getSpec()).thenReturn("gray");
+        when(preprocessProfiles.get(any())).thenReturn(pipeline);
+        when(tesseractEnginePool.getSize()).thenReturn(1);
+        when(tesseractEnginePool.language(any())).thenReturn("eng");
+        when(textRecognizer.recognize(any(), anyString())).thenReturn("text");
+        when(imageProcessService.preprocessImage(any(ByteBuffer.class), any())).thenReturn(PreprocessedImage.of(new Mat()));
+        ocrTaskExecutor.setThreadNamePrefix("ocr-");
+        ocrTaskExecutor.initialize();
+        ocrIoExecutor.initialize();
+        pixelAdmission = spy(new PixelAdmission(environment, tesseractEnginePool, registry));
+        ocrService = new OcrServiceImpl(textRecognizer, new OcrResultCache(environment), imageProcessService,
+                preprocessProfiles, tesseractEnginePool, pixelAdmission, new ImageLimits(environment), mock(OcrMetrics.class),
+                ocrTaskExecutor, ocrIoExecutor, environment);
+    }
+
+    @AfterEach
+    void shutdown() {
+        ocrTaskExecutor.shutdown();
+        ocrIoExecutor.shutdown();
+    }
+
+    @Test
+    void cachedImageIsAnsweredWithoutAdmission() throws Exception {
+        ByteBuffer image = png(30, 40);
+
+        ImageTextDto first = ocrService.submitImage("page.png", image, new OcrOptions()).get(5, TimeUnit.SECONDS);
+        ImageTextDto second = ocrService.submitImage("copy.png", image, new OcrOptions()).get(5, TimeUnit.SECONDS);
+
+        assertThat(first.getText()).isEqualTo("text");
+        assertThat(second.getText()).isEqualTo("text");
+        assertThat(second.getFileName()).isEqualTo("copy.png");
+        verify(pixelAdmission, times(1)).admit(anyLong());
+        verify(textRecognizer, times(1)).recognize(any(), anyString());
+    }
+
+    @Test
+    void admittedPixelsAreReleasedWhenRecognitionFails() {
+        when(textRecognizer.recognize(any(), anyString())).thenThrow(new IllegalStateException("Tesseract could not recognize the image"));
+
+        CompletableFuture<ImageTextDto> result = ocrService.submitImage("page.png", png(30, 40), new OcrOptions());
+
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(registry.get("ocr.admission.in-use").gauge().value()).isZero();
+        verify(pixelAdmission).admit(1200);
+    }
+
+    @Test
+    void queuedImageWaitsForAdmissionAndIsRecognizedByAnOcrWorker() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        when(textRecognizer.recognize(any(), anyString())).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return "text";
+        });
+        PixelAdmission.Permit busy = pixelAdmission.admit(Long.MAX_VALUE);
+        ExecutorService jobs = Executors.newSingleThreadExecutor();
+        try {
+            Future<ImageTextDto> result = jobs.submit(() -> ocrService.extractTextFromImage("page.png", png(30, 40), new OcrOptions()));
+
+            // Longer than the max wait that rejects the images of requests
+            Thread.sleep(300);
+            assertThat(result).isNotDone();
+            busy.close();
+
+            assertThat(result.get(5, TimeUnit.SECONDS).getText()).isEqualTo("text");
+            assertThat(threads).hasSize(1).allMatch(name -> name.startsWith("ocr-"));
+            assertThat(registry.get("ocr.admission.in-use").gauge().value()).isZero();
+        } finally {
+            jobs.shutdownNow();
+        }
+    }
+
+    static ByteBuffer png(int rows, int cols) {
+        MatOfByte encoded = new MatOfByte();
+        Imgcodecs.imencode(".png", new Mat(rows, cols, CvType.CV_8UC1, new Scalar(255)), encoded);
+        byte[] bytes = encoded.toArray();
+        ByteBuffer image = ByteBuffer.allocateDirect(bytes.length);
+        image.put(bytes).flip();
+        return image;
+    }
+}
@@ -0,0 +1,40 @@
+package com.spring.ocr.util;
+
+import com.spring.ocr.error.PayloadTooLargeException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BufferUtilTests {
+
+    @Test
+    void announcedSizeDoesNotReserveMemoryUpFront() throws Exception {
+        ByteBuffer buffer = BufferUtil.readDirect(new ByteArrayInputStream(new byte[10]), 200L * 1024 * 1024, 200L * 1024 * 1024);
+
+        assertThat(buffer.remaining()).isEqualTo(10);
+        assertThat(buffer.capacity()).isLessThanOrEqualTo(BufferUtil.MAX_INITIAL_CAPACITY);
+    }
+
+    @Test
+    void bufferGrowsAsBytesArrive() throws Exception {
+        byte[] content = new byte[3 * BufferUtil.MAX_INITIAL_CAPACITY + 1];
+        content[content.length - 1] = 42;
+
+        ByteBuffer buffer = BufferUtil.readDirect(new ByteArrayInputStream(content), content.length, Long.MAX_VALUE);
+
+        assertThat(buffer.remaining()).isEqualTo(content.length);
+        assertThat(buffer.get(content.length - 1)).isEqualTo((byte) 42);
+    }
+
+    @Test
+    void contentBeyondMaxSizeIsRejected() {
+        assertThatThrownBy(() -> BufferUtil.readDirect(new ByteArrayInputStream(new byte[100]), -1, 50))
+                .isInstanceOf(PayloadTooLargeException.class);
+        assertThatThrownBy(() -> BufferUtil.allocateDirect(100, 50))
+                .isInstanceOf(PayloadTooLargeException.class);
+    }
+}
@@ -0,0 +1,67 @@
+package com.spring.ocr.util;
+
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageHeaderTests {
+
+    @BeforeAll
+    static void loadOpenCv() {
+        OpenCV.loadShared();
+    }
+
+    @Test
+    void readsPngHeader() {
+        ByteBuffer image = encode(".png", new Mat(30, 40, CvType.CV_8UC3, new Scalar(1, 2, 3)));
+
+        assertThat(ImageHeader.read(image)).isEqualTo(new ImageHeader(ImageHeader.Format.PNG, 40, 30, 3));
+        assertThat(image.position()).isZero();
+    }
+
+    @Test
+    void readsJpegHeader() {
+        ByteBuffer image = encode(".jpg", new Mat(30, 40, CvType.CV_8UC1, new Scalar(7)));
+
+        assertThat(ImageHeader.read(image)).isEqualTo(new ImageHeader(ImageHeader.Format.JPEG, 40, 30, 1));
+    }
+
+    @Test
+    void readsDeclaredDimensionsWithoutDecoding() {
+        ByteBuffer image = encode(".png", new Mat(1, 1, CvType.CV_8UC1, new Scalar(0)));
+        image.putInt(16, 60000).putInt(20, 60000);
+
+        assertThat(ImageHeader.read(image).getPixels()).isEqualTo(3_600_000_000L);
+    }
+
+    @Test
+    void recognizesFormatFromMagicBytes() {
+        ByteBuffer png = encode(".png", new Mat(30, 40, CvType.CV_8UC1, new Scalar(7)));
+        ByteBuffer jpeg = encode(".jpg", new Mat(30, 40, CvType.CV_8UC1, new Scalar(7)));
+
+        assertThat(ImageHeader.format(png.limit(8))).isEqualTo(ImageHeader.Format.PNG);
+        assertThat(ImageHeader.format(jpeg.limit(8))).isEqualTo(ImageHeader.Format.JPEG);
+        assertThat(ImageHeader.format(ByteBuffer.wrap("GIF89a".getBytes()))).isNull();
+    }
+
+    @Test
+    void unknownFormatHasNoHeader() {
+        assertThat(ImageHeader.read(ByteBuffer.wrap("GIF89a".getBytes()))).isNull();
+        assertThat(ImageHeader.read(ByteBuffer.allocate(0))).isNull();
+    }
+
+    private static ByteBuffer encode(String extension, Mat mat) {
+        MatOfByte encoded = new MatOfByte();
+        Imgcodecs.imencode(extension, mat, encoded);
+        return ByteBuffer.wrap(encoded.toArray());
+    }
+}
@@ -0,0 +1,33 @@
+package com.spring.ocr.util;
+
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MatScopeTests {
+
+    @BeforeAll
+    static void loadOpenCv() {
+        OpenCV.loadShared();
+    }
+
+    @Test
+    void viewsAreReleasedButNotCounted() {
+        long bytes = MatScope.liveBytes();
+        long mats = MatScope.liveMats();
+        try (MatScope scope = MatScope.open()) {
+            Mat image = MatScope.track(new Mat(100, 50, CvType.CV_8UC1));
+            MatScope.trackView(image.rowRange(0, 100));
+            MatScope.track(image.submat(10, 20, 10, 20));
+
+            assertThat(MatScope.liveMats()).isEqualTo(mats + 3);
+            assertThat(MatScope.liveBytes()).isEqualTo(bytes + 5000);
+        }
+        assertThat(MatScope.liveMats()).isEqualTo(mats);
+        assertThat(MatScope.liveBytes()).isEqualTo(bytes);
+    }
+}
@@ -0,0 +1,50 @@
+package com.spring.ocr.util;
+
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OcrUtilTests {
+
+    @BeforeAll
+    static void loadOpenCv() {
+        OpenCV.loadShared();
+    }
+
+    @Test
+    void tilesAreCutAlongBlankRows() {
+        Mat image = new Mat(950, 50, CvType.CV_8UC1, new Scalar(0));
+        image.rowRange(290, 300).setTo(new Scalar(255));
+        image.rowRange(610, 620).setTo(new Scalar(255));
+
+        List<Tile> tiles = OcrUtil.tiles(image, 300, 20);
+
+        assertThat(tiles).containsExactly(
+                new Tile(0, 299, 0, 299),
+                new Tile(299, 610, 299, 610),
+                new Tile(610, 950, 610, 950));
+    }
+
+    @Test
+    void tilesOverlapWithoutBlankRows() {
+        Mat image = new Mat(950, 50, CvType.CV_8UC1, new Scalar(0));
+
+        List<Tile> tiles = OcrUtil.tiles(image, 300, 20);
+
+        assertThat(tiles).containsExactly(
+                new Tile(0, 320, 0, 300),
+                new Tile(280, 620, 300, 600),
+                new Tile(580, 950, 600, 950));
+        for (int row = 0; row < image.rows(); row++) {
+            int y = row;
+            assertThat(tiles.stream().filter(tile -> tile.owns(y - tile.getTop()))).hasSize(1);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.spring.ocr.util;
+
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class OpencvUtilTests {
+
+    @BeforeAll
+    static void loadOpenCv() {
+        OpenCV.loadShared();
+    }
+
+    @Test
+    void navieRemoveNoiseMatchesPerPixelImplementation() {
+        for (int pNum = 0; pNum <= 3; pNum++) {
+            Mat image = randomBinaryImage(97, 131, pNum);
+            Mat expected = perPixelRemoveNoise(image.clone(), pNum);
+
+            Mat actual = OpencvUtil.navieRemoveNoise(image, pNum);
+
+            assertThat(pixels(actual)).isEqualTo(pixels(expected));
+        }
+    }
+
+    @Test
+    void navieRemoveNoiseRejectsImagesThatAreNot8Bit() {
+        Mat image = new Mat(8, 8, CvType.CV_32FC1, new Scalar(0.5));
+
+        assertThatThrownBy(() -> OpencvUtil.navieRemoveNoise(image, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(image.get(4, 4)[0]).isEqualTo(0.5);
+    }
+
+    @Test
+    void contoursRemoveNoiseRemovesRegionsUpToArea() {
+        Mat image = new Mat(8, 8, CvType.CV_8UC1, new Scalar(255));
+        image.put(1, 1, 0);
+        image.put(1, 5, 0, 0);
+        image.put(5, 1, 0, 0);
+        image.put(6, 1, 0, 0);
+        image.put(6, 6, 128);
+
+        Mat actual = OpencvUtil.contoursRemoveNoise(image, 2);
+
+        assertThat(actual.get(1, 1)[0]).isEqualTo(255);
+        assertThat(actual.get(1, 5)[0]).isEqualTo(255);
+        assertThat(actual.get(5, 1)[0]).isEqualTo(0);
+        assertThat(actual.get(6, 2)[0]).isEqualTo(0);
+        assertThat(actual.get(6, 6)[0]).isEqualTo(0);
+    }
+
+    @Test
+    void matToByteBufferSharesPixels() {
+        Mat image = randomBinaryImage(13, 17, 7);
+
+        ByteBuffer buffer = OpencvUtil.matToByteBuffer(image);
+
+        byte[] shared = new byte[buffer.remaining()];
+        buffer.get(shared);
+        assertThat(shared).isEqualTo(pixels(image));
+    }
+
+    @Test
+    void matScopeReleasesIntermediates() {
+        Mat image = randomBinaryImage(32, 32, 11);
+        long liveMats = MatScope.liveMats();
+        Mat blurred;
+
+        try (MatScope scope = MatScope.open()) {
+            blurred = OpencvUtil.gaussianBlur(OpencvUtil.dilate(image, 3));
+            assertThat(MatScope.liveMats()).isEqualTo(liveMats + 2);
+            assertThat(MatScope.liveBytes()).isPositive();
+        }
+
+        assertThat(MatScope.liveMats()).isEqualTo(liveMats);
+        assertThat(blurred.empty()).isTrue();
+        assertThat(image.empty()).isFalse();
+    }
+
+    @Test
+    void textHeightIsMedianGlyphHeight() {
+        Mat image = new Mat(800, 1000, CvType.CV_8UC1, new Scalar(255));
+        for (int i = 0; i < 40; i++) {
+            int height = i % 4 == 0 ? 60 : 40;
+            Imgproc.rectangle(image, new Point(20 + i * 24, 100), new Point(35 + i * 24, 100 + height - 1), new Scalar(0), -1);
+        }
+
+        assertThat(OpencvUtil.textHeight(image, image.total())).isEqualTo(40);
+        assertThat(OpencvUtil.textHeight(image, image.total() / 4)).isEqualTo(40);
+        assertThat(OpencvUtil.textHeight(new Mat(100, 100, CvType.CV_8UC1, new Scalar(255)), 10000)).isEqualTo(-1);
+    }
+
+    @Test
+    void imageQualityMeasuresNoiseContrastBlurAndSkew() {
+        Mat clean = textPage(200);
+        Mat noisy = new Mat();
+        Mat noise = new Mat(clean.size(), CvType.CV_16S);
+        Core.setRNGSeed(3);
+        Core.randn(noise, 0, 12);
+        clean.convertTo(noisy, CvType.CV_16S);
+        Core.add(noisy, noise, noisy);
+        noisy.convertTo(noisy, CvType.CV_8U);
+        Mat washedOut = new Mat();
+        clean.convertTo(washedOut, -1, 0.2, 150);
+        Mat blurred = new Mat();
+        Imgproc.GaussianBlur(clean, blurred, new Size(9, 9), 3);
+        Mat skewed = new Mat();
+        Imgproc.warpAffine(clean, skewed, Imgproc.getRotationMatrix2D(new Point(500, 400), -4, 1), clean.size(),
+                Imgproc.INTER_LINEAR, Core.BORDER_REPLICATE);
+
+        ImageQuality quality = OpencvUtil.imageQuality(clean, 250_000);
+        assertThat(quality.getNoise()).isLessThan(1);
+        assertThat(quality.getContrast()).isGreaterThan(150);
+        assertThat(quality.getSkew()).isEqualTo(0);
+        assertThat(OpencvUtil.imageQuality(noisy, 250_000).getNoise()).isBetween(10.0, 14.0);
+        assertThat(OpencvUtil.imageQuality(washedOut, 250_000).getContrast()).isLessThan(64);
+        assertThat(OpencvUtil.imageQuality(blurred, 250_000).getSharpness()).isLessThan(quality.getSharpness() / 10);
+        assertThat(OpencvUtil.imageQuality(skewed, 250_000).getSkew()).isCloseTo(4, within(0.2));
+    }
+
+    @Test
+    void deskewStraightensTextLinesOnce() {
+        Mat straight = textPage(255);
+        Mat skewed = new Mat();
+        Imgproc.warpAffine(straight, skewed, Imgproc.getRotationMatrix2D(new Point(500, 400), 5, 1), straight.size(),
+                Imgproc.INTER_LINEAR, Core.BORDER_CONSTANT, new Scalar(255));
+
+        Mat deskewed = OpencvUtil.deskew(skewed, 250_000, 0.3);
+
+        assertThat(OpencvUtil.skewAngle(skewed, skewed.total())).isCloseTo(-5, within(0.2));
+        assertThat(OpencvUtil.skewAngle(deskewed, deskewed.total())).isCloseTo(0, within(0.2));
+        assertThat(deskewed.cols()).isGreaterThan(skewed.cols());
+        assertThat(deskewed.get(0, 0)[0]).isEqualTo(255);
+        assertThat(OpencvUtil.deskew(straight, 250_000, 0.3)).isSameAs(straight);
+    }
+
+    @Test
+    void skewAngleEstimatesKnownRotations() {
+        Mat straight = textPage(255);
+        for (double angle : new double[]{-11.3, -2.46, 0.52, 3.18, 7.74}) {
+            Mat skewed = new Mat();
+            Imgproc.warpAffine(straight, skewed, Imgproc.getRotationMatrix2D(new Point(500, 400), angle, 1), straight.size(),
+                    Imgproc.INTER_LINEAR, Core.BORDER_CONSTANT, new Scalar(255));
+
+            assertThat(OpencvUtil.skewAngle(skewed, skewed.total())).as("rotated by %s degrees", angle).isCloseTo(-angle, within(0.08));
+        }
+    }
+
+    private static Mat textPage(int background) {
+        Mat page = new Mat(800, 1000, CvType.CV_8UC1, new Scalar(background));
+        for (int y = 40; y < 780; y += 36) {
+            Imgproc.putText(page, "The quick brown fox jumps over the lazy dog 0123456789", new Point(30, y),
+                    Imgproc.FONT_HERSHEY_SIMPLEX, 0.9, new Scalar(20), 2);
+        }
+        return page;
+    }
+
+    private static Mat randomBinaryImage(int rows, int cols, long seed) {
+        Mat noise = new Mat(rows, cols, CvType.CV_8UC1);
+        Core.setRNGSeed((int) seed);
+        Core.randu(noise, 0, 256);
+        Mat image = new Mat();
+        Core.compare(noise, new Scalar(96), image, Core.CMP_GT);
+        return image;
+    }
+
+    private static byte[] pixels(Mat mat) {
+        byte[] pixels = new byte[(int) mat.total() * mat.channels()];
+        mat.get(0, 0, pixels);
+        return pixels;
+    }
+
+    /**
+     * The original JNI per-pixel implementation, kept as the reference the bulk version must reproduce
+     */
+    private static Mat perPixelRemoveNoise(Mat mat, int pNum) {
+        for (int j = 1; j < mat.rows() - 1; ++j) {
+            for (int i = 1; i < mat.cols() - 1; ++i) {
+                int nCount = 0;
+                for (int m = j - 1; m <= j + 1; ++m) {
+                    for (int n = i - 1; n <= i + 1; ++n) {
+                        if ((int) mat.get(m, n)[0] == 0) {
+                            nCount++;
+                        }
+                    }
+                }
+                if ((int) mat.get(j, i)[0] == 0) {
+                    if (nCount <= pNum) {
+                        mat.put(j, i, 255);
+                    }
+                } else if (nCount >= 7) {
+                    mat.put(j, i, 0);
+                }
+            }
+        }
+        return mat;
+    }
+}